@@ -0,0 +1,63 @@
+package com.actility.m2m.ontology.mapper.benchmarks;
+
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downlink fixtures: {@code adeunis} drives {@code extractDriverMessage}, {@code update_commands} drives
+ * {@code updateCommand}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownFixtureBenchmark {
+
+    @Param({"adeunis", "update_commands"})
+    public String fixture;
+
+    private OperationService operationService;
+    private DownMessage message;
+    private List<DownOperation> operations;
+    private MappingPlan<DownMessage> plan;
+
+    @Setup
+    public void setup() {
+        JsonNode request = Fixtures.request(fixture);
+        operationService = new OperationService(new OperationFactory());
+        message = Fixtures.downMessage(request);
+        operations = Fixtures.downOperations(request);
+        plan = operationService.compileDownOperations(operations);
+    }
+
+    @Benchmark
+    public Optional<DownMessage> applyOperations() {
+        return operationService.applyDownOperations(message, operations);
+    }
+
+    @Benchmark
+    public Optional<DownMessage> applyPlan() {
+        return plan.apply(message);
+    }
+}
@@ -0,0 +1,73 @@
+package com.actility.m2m.ontology.mapper.benchmarks;
+
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import com.actility.m2m.ontology.mapper.server.module.MappingExecutorModule;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiled fixture plan run through the {@link MappingExecutor} in each {@link ExecutionMode}, with as many callers
+ * as processors. The executor is built by {@link MappingExecutorModule}, so its {@code mapping.*} settings apply; on a
+ * runtime without virtual threads VIRTUAL runs on the worker pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ExecutionModeBenchmark {
+
+    @Param({"EVENT_LOOP", "WORKER", "VIRTUAL"})
+    public ExecutionMode mode;
+
+    @Param({"abeeway", "nke"})
+    public String fixture;
+
+    private ExecutorService workerExecutor;
+    private MappingExecutor mappingExecutor;
+    private UpMessage message;
+    private MappingPlan<UpMessage> plan;
+
+    @Setup
+    public void setup() {
+        MappingExecutorModule module = new MappingExecutorModule();
+        workerExecutor = module.provideMappingExecutorService();
+        mappingExecutor = module.provideMappingExecutor(workerExecutor);
+        JsonNode request = Fixtures.request(fixture);
+        message = Fixtures.upMessage(request);
+        plan = new OperationService(new OperationFactory()).compileUpOperations(Fixtures.upOperations(request));
+    }
+
+    @TearDown
+    public void tearDown() {
+        workerExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Optional<UpMessage> applyPlan() {
+        return mappingExecutor.execute(mode, () -> plan.apply(message)).blockingGet();
+    }
+}
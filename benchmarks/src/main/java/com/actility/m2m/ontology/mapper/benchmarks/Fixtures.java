@@ -0,0 +1,73 @@
+package com.actility.m2m.ontology.mapper.benchmarks;
+
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Loads the {@code src/it/resources/requests} fixtures, packaged under {@code fixtures/} by the benchmark module.
+ * The fixtures are Mustache templates for the API tests: the delimiter switches that protect literal {@code {{...}}}
+ * expressions are removed, which is what rendering them does.
+ */
+final class Fixtures {
+
+    @Nonnull
+    private static final String SET_DELIMITERS = "{{=<% %>=}}";
+    @Nonnull
+    private static final String RESET_DELIMITERS = "<%={{ }}=%>";
+    @Nonnull
+    static final ObjectMapper objectMapper = ObjectMapperModule.createObjectMapper();
+
+    private Fixtures() {
+    }
+
+    @Nonnull
+    static JsonNode request(@Nonnull String name) {
+        InputStream resource = Fixtures.class.getResourceAsStream("/fixtures/" + name + "_request.json");
+        if (resource == null) {
+            resource = Fixtures.class.getResourceAsStream("/fixtures/" + name + ".json");
+        }
+        if (resource == null) {
+            throw new IllegalArgumentException("unknown fixture " + name);
+        }
+        try (InputStream inputStream = resource) {
+            String template = new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+            return objectMapper.readTree(template.replace(SET_DELIMITERS, "").replace(RESET_DELIMITERS, ""));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Nonnull
+    static UpMessage upMessage(@Nonnull JsonNode request) {
+        return objectMapper.convertValue(request.get("message"), UpMessage.class);
+    }
+
+    @Nonnull
+    static List<UpOperation> upOperations(@Nonnull JsonNode request) {
+        return objectMapper.convertValue(request.get("operations"), new TypeReference<List<UpOperation>>() {});
+    }
+
+    @Nonnull
+    static DownMessage downMessage(@Nonnull JsonNode request) {
+        return objectMapper.convertValue(request.get("message"), DownMessage.class);
+    }
+
+    @Nonnull
+    static List<DownOperation> downOperations(@Nonnull JsonNode request) {
+        return objectMapper.convertValue(request.get("operationsDown"), new TypeReference<List<DownOperation>>() {});
+    }
+}
@@ -0,0 +1,63 @@
+package com.actility.m2m.ontology.mapper.benchmarks;
+
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full uplink operation lists of the real driver fixtures, interpreted per message as {@code /up-apply} does and
+ * through a plan compiled once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpFixtureBenchmark {
+
+    @Param({"abeeway", "elsys", "nke", "sensing_labs", "update_points", "filter_request_message", "filter_points"})
+    public String fixture;
+
+    private OperationService operationService;
+    private UpMessage message;
+    private List<UpOperation> operations;
+    private MappingPlan<UpMessage> plan;
+
+    @Setup
+    public void setup() {
+        JsonNode request = Fixtures.request(fixture);
+        operationService = new OperationService(new OperationFactory());
+        message = Fixtures.upMessage(request);
+        operations = Fixtures.upOperations(request);
+        plan = operationService.compileUpOperations(operations);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> applyOperations() {
+        return operationService.applyUpOperations(message, operations);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> applyPlan() {
+        return plan.apply(message);
+    }
+}
@@ -0,0 +1,128 @@
+package com.actility.m2m.ontology.mapper.benchmarks;
+
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationHandler;
+import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPoint;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpExtractPoints;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterPointsOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpUpdatePoints;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpdatePoint;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each uplink operation handler alone, on a synthetic message of {@code points} points holding {@code records}
+ * records each. The message envelope is the one of the {@code nke} fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpOperationBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int points;
+
+    @Param({"1", "10", "100"})
+    public int records;
+
+    private final OperationFactory operationFactory = new OperationFactory();
+
+    private UpMessage rawMessage;
+    private UpMessage extractedMessage;
+    private UpExtractPoints extractPoints;
+    private UpUpdatePoints updatePoints;
+    private UpFilterOperation filter;
+    private UpFilterPointsOperation filterPoints;
+
+    @Setup
+    public void setup() {
+        ObjectNode messageJson = (ObjectNode) Fixtures.request("nke").get("message").deepCopy();
+        messageJson.remove("points");
+        ObjectNode packetMessage = ((ObjectNode) messageJson.get("packet")).putObject("message");
+
+        Map<String, JmesPathPoint> extractedPoints = new LinkedHashMap<>();
+        Map<String, UpdatePoint> updatedPoints = new LinkedHashMap<>();
+        List<String> keptPoints = new ArrayList<>();
+        OffsetDateTime time = OffsetDateTime.parse("2020-01-01T10:00:00.000Z");
+        for (int point = 0; point < points; point++) {
+            String name = "point" + point;
+            ObjectNode pointJson = packetMessage.putObject(name);
+            ArrayNode values = pointJson.putArray("values");
+            ArrayNode times = pointJson.putArray("times");
+            for (int record = 0; record < records; record++) {
+                values.add(20.5 + record);
+                times.add(time.plusSeconds(record).toString());
+            }
+            extractedPoints.put(name, JmesPathPoint.newJmesPathPointBuilder()
+                    .value("{{packet.message." + name + ".values}}")
+                    .eventTime("{{packet.message." + name + ".times}}")
+                    .unitId("Cel")
+                    .build());
+            updatedPoints.put(name, UpdatePoint.newUpdatePointBuilder()
+                    .value("{{@ | floor(@)}}")
+                    .unitId("Far")
+                    .build());
+            if (point % 2 == 0) {
+                keptPoints.add(name);
+            }
+        }
+
+        extractPoints = UpExtractPoints.newUpExtractPointsBuilder().points(extractedPoints).build();
+        updatePoints = UpUpdatePoints.newUpUpdatePointsBuilder().points(updatedPoints).build();
+        filter = UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build();
+        filterPoints = UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(keptPoints).build();
+
+        rawMessage = Fixtures.objectMapper.convertValue(messageJson, UpMessage.class);
+        extractedMessage = apply(rawMessage, extractPoints).orElseThrow(IllegalStateException::new);
+    }
+
+    private Optional<UpMessage> apply(UpMessage message, UpOperation operation) {
+        OperationHandler handler = operationFactory.build(operation);
+        return handler.applyUpOperation(message, operation);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> extractPoints() {
+        return apply(rawMessage, extractPoints);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> updatePoints() {
+        return apply(extractedMessage, updatePoints);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> filter() {
+        return apply(extractedMessage, filter);
+    }
+
+    @Benchmark
+    public Optional<UpMessage> filterPoints() {
+        return apply(extractedMessage, filterPoints);
+    }
+}
@@ -4,24 +4,42 @@ import com.actility.crafty.core.junit.CraftyTest;
 import com.actility.crafty.http.client.HttpClientResource;
 import com.actility.crafty.http.server.junit.CraftyHttpClient;
 import com.actility.m2m.commons.service.CommonApplication;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import com.actility.m2m.ontology.mapper.profile.MappingProfile;
+import com.actility.m2m.ontology.mapper.profile.ProfileRegistry;
 import com.actility.m2m.ontology.mapper.server.component.DaggerServerComponent;
+import com.actility.m2m.ontology.mapper.server.module.ProfileRegistryModule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.skyscreamer.jsonassert.comparator.CustomComparator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Optional;
+
 import static com.actility.crafty.core.Scenario.scenario;
 import static com.actility.crafty.core.builders.MustacheTemplateBuilder.template;
 import static com.actility.crafty.core.consumers.ContextMatcherFactory.checkJson;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
+import static io.netty.handler.codec.http.HttpResponseStatus.NO_CONTENT;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
 
 @CraftyTest
 @CommonApplication(daggerClass = DaggerServerComponent.class, serverClass = Server.class)
 public class OntologyMappingAPITest {
 
     private static final String ontologyMappingBaseUri = "http://localhost:8080";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
     @CraftyHttpClient
     private HttpClientResource httpClientResource;
 
@@ -272,4 +290,198 @@ public class OntologyMappingAPITest {
                                         }))
                 .start();
     }
+
+    @Test
+    void should_stream_batch_results_in_input_order() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .post()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/up-apply/batch")
+                                .body(context -> template("requests/batch_request.json").build(context).getBytes()))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> checkBatchLines(textBody, true)))
+                .start();
+    }
+
+    @Test
+    void should_stream_ndjson_batch_results_in_completion_order() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .post()
+                                .header(CONTENT_TYPE.toString(), NDJSON)
+                                .uri(ontologyMappingBaseUri + "/up-apply/batch?order=completion")
+                                .body(context -> template("requests/batch_request.ndjson").build(context).getBytes()))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> checkBatchLines(textBody, false)))
+                .start();
+    }
+
+    /**
+     * The batch requests hold a kept uplink, a location dropped by the filter and a message that cannot be decoded.
+     */
+    private static void checkBatchLines(String textBody, boolean inputOrder) {
+        String[] lines = textBody.split("\n");
+        assertThat(lines).hasSize(3);
+        JsonNode[] items = new JsonNode[lines.length];
+        for (String line : lines) {
+            JsonNode item = readTree(line);
+            int index = item.get("index").asInt();
+            assertThat(items[index]).isNull();
+            items[index] = item;
+            if (inputOrder) {
+                assertThat(line).isEqualTo(lines[index]);
+            }
+        }
+        assertThat(items[0].get("message").get("type").asText()).isEqualTo("deviceUplink");
+        assertThat(items[0].has("error")).isFalse();
+        assertThat(items[1].has("message")).isFalse();
+        assertThat(items[1].has("error")).isFalse();
+        assertThat(items[2].has("message")).isFalse();
+        assertThat(items[2].get("error").get("message").asText()).isNotEmpty();
+    }
+
+    private static JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void should_expose_prometheus_metrics() throws InterruptedException {
+        scenario()
+                .send(httpClientResource.get().uri(ontologyMappingBaseUri + "/metrics"))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody(
+                                        (context, textBody) -> assertThat(textBody)
+                                                .contains("ontology_mapping_executor_queue_time_seconds_count")
+                                                .contains("ontology_mapping_executor_rejected_total")))
+                .start();
+    }
+
+    @Test
+    void should_list_top_expressions() throws InterruptedException {
+        scenario()
+                .send(httpClientResource.get().uri(ontologyMappingBaseUri + "/admin/expressions/top?limit=5"))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> {
+                                    JsonNode top = readTree(textBody);
+                                    assertThat(top.isArray()).isTrue();
+                                    assertThat(top.size()).isLessThanOrEqualTo(5);
+                                }))
+                .start();
+    }
+
+    @Test
+    void should_put_get_apply_and_delete_profile() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .put()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/profiles/it-filter")
+                                .body(context -> template("requests/profile_request.json").build(context).getBytes()))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> {
+                                    JsonNode profile = readTree(textBody);
+                                    assertThat(profile.get("id").asText()).isEqualTo("it-filter");
+                                    assertThat(profile.get("version").asLong()).isPositive();
+                                    assertThat(profile.get("executionMode").asText()).isEqualTo("WORKER");
+                                }))
+                .send(httpClientResource.get().uri(ontologyMappingBaseUri + "/profiles/it-filter"))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> {
+                                    JsonNode profile = readTree(textBody);
+                                    assertThat(profile.get("id").asText()).isEqualTo("it-filter");
+                                    assertThat(profile.get("operations").size()).isEqualTo(1);
+                                }))
+                .send(
+                        httpClientResource
+                                .post()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/profiles/it-filter/up-apply")
+                                .body(context -> template("requests/profile_message.json").build(context).getBytes()))
+                .recv(
+                        httpClientResource
+                                .statusCode(OK.code())
+                                .textBody((context, textBody) -> assertThat(readTree(textBody).get("type").asText())
+                                        .isEqualTo("deviceUplink")))
+                .send(httpClientResource.delete().uri(ontologyMappingBaseUri + "/profiles/it-filter"))
+                .recv(httpClientResource.statusCode(NO_CONTENT.code()))
+                .send(httpClientResource.get().uri(ontologyMappingBaseUri + "/profiles/it-filter"))
+                .recv(httpClientResource.statusCode(NOT_FOUND.code()))
+                .start();
+    }
+
+    @Test
+    void should_fail_when_profile_operations_are_invalid() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .put()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/profiles/it-invalid")
+                                .body(context -> template("requests/bad_request_profile.json").build(context).getBytes()))
+                .recv(httpClientResource.statusCode(BAD_REQUEST.code()))
+                .start();
+    }
+
+    @Test
+    void should_fail_when_profile_does_not_exist() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .post()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/profiles/it-unknown/up-apply")
+                                .body(context -> template("requests/profile_message.json").build(context).getBytes()))
+                .recv(httpClientResource.statusCode(NOT_FOUND.code()))
+                .send(httpClientResource.delete().uri(ontologyMappingBaseUri + "/profiles/it-unknown"))
+                .recv(httpClientResource.statusCode(NOT_FOUND.code()))
+                .start();
+    }
+
+    /**
+     * A restart is simulated by a second registry loading the directory the server writes its profiles to.
+     */
+    @Test
+    void should_reload_profile_after_restart() throws InterruptedException {
+        scenario()
+                .send(
+                        httpClientResource
+                                .put()
+                                .header(CONTENT_TYPE.toString(), APPLICATION_JSON.toString())
+                                .uri(ontologyMappingBaseUri + "/profiles/it-persisted")
+                                .body(context -> template("requests/profile_request.json").build(context).getBytes()))
+                .recv(httpClientResource.statusCode(OK.code()))
+                .start();
+
+        ProfileRegistry restarted = new ProfileRegistry(
+                new OperationService(new OperationFactory()),
+                Paths.get(ProfileRegistryModule.DEFAULT_PROFILES_DIRECTORY));
+        try {
+            Optional<MappingProfile> profile = restarted.get("it-persisted");
+            assertThat(profile).isPresent();
+            assertThat(profile.get().executionMode).isEqualTo(ExecutionMode.WORKER);
+            assertThat(restarted.getUpPlan("it-persisted").getExplain()).hasSize(1);
+        } finally {
+            restarted.delete("it-persisted");
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.actility.m2m.ontology.mapper;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An operation bound to its handler with everything that does not depend on the message already resolved.
+ * Implementations are immutable and may be applied concurrently to any number of messages.
+ */
+public interface CompiledOperation<M> {
+    @Nonnull
+    Optional<M> apply(@Nonnull MessageContext<M> context);
+
+    /**
+     * @return the top-level message fields the operation reads, {@code null} when it may read any of them
+     */
+    @Nullable
+    default Set<String> rootFields() {
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import javax.annotation.Nonnull;
+import java.util.function.Function;
+
+/**
+ * Thread-safe, size-bounded cache of the compiled form of operations, keyed by operation value. Handlers use it when
+ * they are applied to an operation list directly, outside of a {@link MappingPlan}: requests carry equal operations
+ * for every message, so they are compiled once instead of once per message. Operations that fail to compile are not
+ * cached and fail again on the next message.
+ */
+public final class CompiledOperationCache<O, M> {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000L;
+
+    @Nonnull
+    private final LoadingCache<O, CompiledOperation<M>> cache;
+
+    public CompiledOperationCache(@Nonnull Function<O, CompiledOperation<M>> compiler) {
+        this(compiler, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CompiledOperationCache(@Nonnull Function<O, CompiledOperation<M>> compiler, long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build(CacheLoader.from(compiler::apply));
+    }
+
+    /**
+     * @throws RuntimeException the compilation error of the operation
+     */
+    @Nonnull
+    public CompiledOperation<M> get(@Nonnull O operation) {
+        try {
+            return cache.getUnchecked(operation);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
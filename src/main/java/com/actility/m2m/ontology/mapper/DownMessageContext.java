@@ -0,0 +1,36 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.flow.data.DownMessage;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+
+class DownMessageContext extends MessageContext<DownMessage> {
+
+    private static final MessageProperties<DownMessage> PROPERTIES = MessageProperties.of(DownMessage.class);
+
+    /**
+     * Properties patched in place, any other change rebuilds the view.
+     */
+    private static final Set<String> PATCHED = ImmutableSet.of("command", "packet");
+
+    DownMessageContext(@Nonnull DownMessage message) {
+        super(message);
+    }
+
+    @Override
+    protected boolean patch(@Nonnull ObjectNode json, @Nonnull DownMessage oldMessage, @Nonnull DownMessage newMessage) {
+        if (!PROPERTIES.sameExcept(oldMessage, newMessage, PATCHED)) {
+            return false;
+        }
+        if (oldMessage.command != newMessage.command) {
+            setField(json, "command", newMessage.command);
+        }
+        if (oldMessage.packet != newMessage.packet) {
+            setField(json, "packet", newMessage.packet);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.ontology.mapper.metrics.MappingMetrics;
+import com.actility.m2m.ontology.mapper.metrics.OperationMetrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An operation list compiled once by {@link OperationService} and applied to any number of messages.
+ * A plan is immutable and thread-safe.
+ * <p>
+ * Messages produced by a plan may share JSON nodes with the plan itself, such as the constant parts of a driver
+ * message or command input template, and with the message they were mapped from. Only the top-level object of a
+ * rendered template is owned by the produced message: nodes below it must be treated as read-only, and copied before
+ * being modified.
+ */
+public final class MappingPlan<M> {
+
+    @Nonnull
+    private final List<CompiledOperation<M>> operations;
+
+    @Nonnull
+    private final OperationMetrics[] operationMetrics;
+
+    @Nonnull
+    private final Function<M, MessageContext<M>> contextFactory;
+
+    @Nonnull
+    private final MappingMetrics metrics;
+
+    @Nonnull
+    private final Consumer<M> resultRecorder;
+
+    @Nonnull
+    private final List<String> explain;
+
+    @Nullable
+    private final Set<String> rootFields;
+
+    MappingPlan(
+            @Nonnull List<CompiledOperation<M>> operations,
+            @Nonnull List<String> explain,
+            @Nonnull List<OperationMetrics> operationMetrics,
+            @Nonnull Function<M, MessageContext<M>> contextFactory,
+            @Nonnull MappingMetrics metrics,
+            @Nonnull Consumer<M> resultRecorder) {
+        this.operations = Collections.unmodifiableList(new ArrayList<>(operations));
+        this.explain = Collections.unmodifiableList(new ArrayList<>(explain));
+        this.operationMetrics = operationMetrics.toArray(new OperationMetrics[0]);
+        this.contextFactory = contextFactory;
+        this.metrics = metrics;
+        this.resultRecorder = resultRecorder;
+        this.rootFields = rootFields(operations);
+    }
+
+    @Nullable
+    private static <M> Set<String> rootFields(@Nonnull List<CompiledOperation<M>> operations) {
+        Set<String> fields = new HashSet<>();
+        for (CompiledOperation<M> operation : operations) {
+            Set<String> operationFields = operation.rootFields();
+            if (operationFields == null) {
+                return null;
+            }
+            fields.addAll(operationFields);
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+
+    @Nonnull
+    public List<CompiledOperation<M>> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return one line per compiled operation, in execution order, with the operations of the original list it was
+     * built from and the rewrites of {@link PlanOptimizer}
+     */
+    @Nonnull
+    public List<String> getExplain() {
+        return explain;
+    }
+
+    /**
+     * @return the top-level message fields read by the operations, {@code null} when one of them may read any field
+     */
+    @Nullable
+    public Set<String> getRootFields() {
+        return rootFields;
+    }
+
+    @Nonnull
+    public Optional<M> apply(@Nonnull M message) {
+        return apply(contextFactory.apply(message));
+    }
+
+    @Nonnull
+    public Optional<M> apply(@Nonnull MessageContext<M> context) {
+        try {
+            for (int i = 0; i < operationMetrics.length; i++) {
+                long start = System.nanoTime();
+                Optional<M> messageOptional = operations.get(i).apply(context);
+                operationMetrics[i].record(start, !messageOptional.isPresent());
+                if (!messageOptional.isPresent()) {
+                    return Optional.empty();
+                }
+                context.update(messageOptional.get());
+            }
+        } catch (RuntimeException e) {
+            metrics.recordFailure(e);
+            throw e;
+        }
+        resultRecorder.accept(context.getMessage());
+        return Optional.of(context.getMessage());
+    }
+}
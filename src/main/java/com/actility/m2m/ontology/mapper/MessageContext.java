@@ -0,0 +1,147 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.commons.service.mapper.JsonMapper;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.flow.data.UpMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Evaluation context of one message going through an operation pipeline. It holds the JSON view of the message
+ * shared by every operation: the view is built on first use and, when an operation only replaces the fields
+ * operations are expected to produce ({@code points} for uplinks, {@code command} and {@code packet} for downlinks),
+ * only those fields are rebuilt. Operations that know which top-level fields they read may ask for a scoped view
+ * holding only those fields, so that large fields nobody reads are never converted. A context belongs to a single
+ * message and is not thread-safe.
+ */
+public abstract class MessageContext<M> {
+
+    protected static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+
+    @Nonnull
+    private M message;
+
+    @Nullable
+    private ObjectNode messageJson;
+
+    @Nullable
+    private ObjectNode scopedJson;
+
+    @Nonnull
+    private final Set<String> scopedFields = new HashSet<>();
+
+    protected MessageContext(@Nonnull M message) {
+        this.message = message;
+    }
+
+    @Nonnull
+    public static MessageContext<UpMessage> of(@Nonnull UpMessage message) {
+        return new UpMessageContext(message);
+    }
+
+    @Nonnull
+    public static MessageContext<DownMessage> of(@Nonnull DownMessage message) {
+        return new DownMessageContext(message);
+    }
+
+    @Nonnull
+    public M getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the JSON view of the current message. Callers must not modify it.
+     */
+    @Nonnull
+    public JsonNode getMessageJson() {
+        if (messageJson == null) {
+            messageJson = (ObjectNode) jsonMapper.toJsonNode(message);
+            scopedJson = null;
+            scopedFields.clear();
+        }
+        return messageJson;
+    }
+
+    /**
+     * Returns a JSON view of the current message holding at least the given top-level fields. The full view is
+     * returned when it is already built, when {@code fields} is {@code null} or when one of them cannot be converted
+     * on its own. Callers must not modify it.
+     */
+    @Nonnull
+    public JsonNode getMessageJson(@Nullable Set<String> fields) {
+        if (messageJson != null || fields == null || !scopableFields().containsAll(fields)) {
+            return getMessageJson();
+        }
+        if (scopedJson == null) {
+            scopedJson = JsonNodeFactory.instance.objectNode();
+        }
+        for (String name : fields) {
+            if (scopedFields.add(name)) {
+                setField(scopedJson, name, fieldValue(message, name));
+            }
+        }
+        return scopedJson;
+    }
+
+    /**
+     * Replaces the current message with the result of an operation.
+     */
+    public void update(@Nonnull M newMessage) {
+        if (newMessage == message) {
+            return;
+        }
+        M oldMessage = message;
+        message = newMessage;
+        if (messageJson != null && !patch(messageJson, oldMessage, newMessage)) {
+            messageJson = null;
+        }
+        if (scopedJson != null) {
+            for (String name : scopedFields) {
+                Object value = fieldValue(newMessage, name);
+                if (value != fieldValue(oldMessage, name)) {
+                    setField(scopedJson, name, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Patches the JSON view for the fields that changed between both messages.
+     *
+     * @return false when the view could not be patched and must be rebuilt
+     */
+    protected abstract boolean patch(@Nonnull ObjectNode json, @Nonnull M oldMessage, @Nonnull M newMessage);
+
+    /**
+     * @return the top-level fields that {@link #fieldValue(Object, String)} converts on their own, none by default
+     */
+    @Nonnull
+    protected Set<String> scopableFields() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the value of a field returned by {@link #scopableFields()}, serialized under the same name as in the
+     * full view
+     */
+    @Nullable
+    protected Object fieldValue(@Nonnull M message, @Nonnull String name) {
+        throw new IllegalArgumentException("Field cannot be scoped: " + name);
+    }
+
+    protected static void setField(@Nonnull ObjectNode json, @Nonnull String name, @Nullable Object value) {
+        if (value == null) {
+            json.remove(name);
+        } else {
+            json.set(name, jsonMapper.toJsonNode(value));
+        }
+    }
+}
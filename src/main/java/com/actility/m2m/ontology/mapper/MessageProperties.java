@@ -0,0 +1,71 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The serialized properties of a message type, read from the Jackson metadata of the mapper configuration that
+ * builds the JSON views. Message types are generated, so the properties follow the model instead of a hand-written
+ * list: a property added to the model is compared and scoped like the others.
+ */
+final class MessageProperties<M> {
+
+    @Nonnull
+    private final Map<String, AnnotatedMember> accessors;
+
+    private MessageProperties(@Nonnull Map<String, AnnotatedMember> accessors) {
+        this.accessors = accessors;
+    }
+
+    @Nonnull
+    static <M> MessageProperties<M> of(@Nonnull Class<M> type) {
+        ObjectMapper objectMapper = ObjectMapperModule.createObjectMapper();
+        BeanDescription description =
+                objectMapper.getSerializationConfig().introspect(objectMapper.constructType(type));
+        ImmutableMap.Builder<String, AnnotatedMember> accessors = ImmutableMap.builder();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            AnnotatedMember accessor = property.getAccessor();
+            if (accessor != null) {
+                accessor.fixAccess(true);
+                accessors.put(property.getName(), accessor);
+            }
+        }
+        return new MessageProperties<>(accessors.build());
+    }
+
+    @Nonnull
+    Set<String> names() {
+        return accessors.keySet();
+    }
+
+    @Nullable
+    Object get(@Nonnull M message, @Nonnull String name) {
+        AnnotatedMember accessor = accessors.get(name);
+        if (accessor == null) {
+            throw new IllegalArgumentException("Unknown message property: " + name);
+        }
+        return accessor.getValue(message);
+    }
+
+    /**
+     * @return whether both messages hold the same instances for every property but the given ones
+     */
+    boolean sameExcept(@Nonnull M oldMessage, @Nonnull M newMessage, @Nonnull Set<String> excluded) {
+        for (Map.Entry<String, AnnotatedMember> entry : accessors.entrySet()) {
+            if (!excluded.contains(entry.getKey())
+                    && entry.getValue().getValue(oldMessage) != entry.getValue().getValue(newMessage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
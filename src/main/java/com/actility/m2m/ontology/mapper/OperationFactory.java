@@ -3,34 +3,49 @@ package com.actility.m2m.ontology.mapper;
 import com.actility.m2m.ontology.mapper.operations.*;
 import com.actility.m2m.ontology.mapping.java.lib.data.*;
 
+import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
 
 public class OperationFactory {
 
+    @Nonnull
+    private final Map<Class<?>, OperationHandler> upHandlers = new HashMap<>();
+    @Nonnull
+    private final Map<Class<?>, OperationHandler> downHandlers = new HashMap<>();
+
     @Inject
     public OperationFactory() {
+        this(ServiceLoader.load(OperationHandlerProvider.class));
+    }
+
+    public OperationFactory(@Nonnull Iterable<OperationHandlerProvider> providers) {
+        upHandlers.put(UpExtractPoints.class, new UpExtractPointsOperation());
+        upHandlers.put(UpFilterOperation.class, new FilterOperation());
+        upHandlers.put(UpFilterPointsOperation.class, new FilterPointsOperation());
+        upHandlers.put(UpUpdatePoints.class, new UpUpdatePointsOperation());
+        downHandlers.put(DownExtractDriverMessage.class, new DownExtractDriverMessageOperation());
+        downHandlers.put(DownUpdateCommand.class, new DownUpdateCommandOperation());
+        for (OperationHandlerProvider provider : providers) {
+            upHandlers.putAll(provider.getUpOperationHandlers());
+            downHandlers.putAll(provider.getDownOperationHandlers());
+        }
     }
 
     public OperationHandler build(UpOperation operation) {
-        if (operation.getClass() == UpExtractPoints.class) {
-            return new UpExtractPointsOperation();
-        }else if(operation.getClass() == UpFilterOperation.class){
-            return new FilterOperation();
-        }else if(operation.getClass() == UpFilterPointsOperation.class){
-            return new FilterPointsOperation();
-        }else if(operation.getClass() == UpUpdatePoints.class){
-            return new UpUpdatePointsOperation();
-        } else {
+        OperationHandler handler = upHandlers.get(operation.getClass());
+        if (handler == null) {
             throw new UnsupportedOperationException("Unknown Operation " + operation.getClass());
         }
+        return handler;
     }
     public OperationHandler build(DownOperation operation) {
-        if (operation.getClass() == DownExtractDriverMessage.class) {
-            return new DownExtractDriverMessageOperation();
-        }else if(operation.getClass() == DownUpdateCommand.class){
-            return new DownUpdateCommandOperation();
-        } else {
+        OperationHandler handler = downHandlers.get(operation.getClass());
+        if (handler == null) {
             throw new UnsupportedOperationException("Unknown Operation " + operation.getClass());
         }
+        return handler;
     }
-}
\ No newline at end of file
+}
@@ -10,4 +10,20 @@ import java.util.Optional;
 public interface OperationHandler {
     Optional<UpMessage> applyUpOperation(UpMessage message, UpOperation upOperation);
     Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation downOperation);
-}
\ No newline at end of file
+
+    default Optional<UpMessage> applyUpOperation(MessageContext<UpMessage> context, UpOperation upOperation) {
+        return applyUpOperation(context.getMessage(), upOperation);
+    }
+
+    default Optional<DownMessage> applyDownOperation(MessageContext<DownMessage> context, DownOperation downOperation) {
+        return applyDownOperation(context.getMessage(), downOperation);
+    }
+
+    default CompiledOperation<UpMessage> compileUpOperation(UpOperation upOperation) {
+        return context -> applyUpOperation(context, upOperation);
+    }
+
+    default CompiledOperation<DownMessage> compileDownOperation(DownOperation downOperation) {
+        return context -> applyDownOperation(context, downOperation);
+    }
+}
@@ -0,0 +1,27 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Extension point to register handlers for new operation types without editing {@link OperationFactory}.
+ * Implementations are discovered with {@link java.util.ServiceLoader} through
+ * {@code META-INF/services/com.actility.m2m.ontology.mapper.OperationHandlerProvider}.
+ * Handlers are shared by every message and must be stateless.
+ */
+public interface OperationHandlerProvider {
+
+    @Nonnull
+    default Map<Class<? extends UpOperation>, OperationHandler> getUpOperationHandlers() {
+        return Collections.emptyMap();
+    }
+
+    @Nonnull
+    default Map<Class<? extends DownOperation>, OperationHandler> getDownOperationHandlers() {
+        return Collections.emptyMap();
+    }
+}
@@ -2,42 +2,111 @@ package com.actility.m2m.ontology.mapper;
 
 import com.actility.m2m.flow.data.DownMessage;
 import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.metrics.MappingMetrics;
+import com.actility.m2m.ontology.mapper.metrics.OperationMetrics;
 import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 public class OperationService {
 
     private final OperationFactory operationFactory;
+    private final MappingMetrics metrics;
 
-    @Inject
     public OperationService(OperationFactory operationFactory) {
+        this(operationFactory, new MappingMetrics());
+    }
+
+    @Inject
+    public OperationService(OperationFactory operationFactory, MappingMetrics metrics) {
         this.operationFactory = operationFactory;
+        this.metrics = metrics;
     }
     @Nonnull
     public Optional<UpMessage> applyUpOperations(@Nonnull UpMessage message, @Nonnull List<UpOperation> operations) {
-        Optional<UpMessage> messageOptional = Optional.of(message);
-        for (UpOperation operation : operations) {
-            if(!messageOptional.isPresent()){
-                return Optional.empty();
+        MessageContext<UpMessage> context = MessageContext.of(message);
+        try {
+            for (UpOperation operation : operations) {
+                OperationHandler handler = this.operationFactory.build(operation);
+                OperationMetrics operationMetrics = metrics.operation(operation.getClass());
+                long start = System.nanoTime();
+                Optional<UpMessage> messageOptional = handler.applyUpOperation(context, operation);
+                operationMetrics.record(start, !messageOptional.isPresent());
+                if(!messageOptional.isPresent()){
+                    return Optional.empty();
+                }
+                context.update(messageOptional.get());
             }
-            messageOptional = this.operationFactory.build(operation).applyUpOperation(messageOptional.get(), operation);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(e);
+            throw e;
         }
-        return messageOptional;
+        metrics.recordProduced(context.getMessage());
+        return Optional.of(context.getMessage());
     }
+    /**
+     * Like a {@link MappingPlan}, the produced message may share JSON nodes with the compiled operations, which are
+     * cached and reused for later messages: the nodes below {@code packet.message} and {@code command.input} must not
+     * be modified.
+     */
     @Nonnull
     public Optional<DownMessage> applyDownOperations(@Nonnull DownMessage message, @Nonnull List<DownOperation> operations) {
-        Optional<DownMessage> messageOptional = Optional.of(message);
-        for (DownOperation operation : operations) {
-            if(!messageOptional.isPresent()){
-                return Optional.empty();
+        MessageContext<DownMessage> context = MessageContext.of(message);
+        try {
+            for (DownOperation operation : operations) {
+                OperationHandler handler = this.operationFactory.build(operation);
+                OperationMetrics operationMetrics = metrics.operation(operation.getClass());
+                long start = System.nanoTime();
+                Optional<DownMessage> messageOptional = handler.applyDownOperation(context, operation);
+                operationMetrics.record(start, !messageOptional.isPresent());
+                if(!messageOptional.isPresent()){
+                    return Optional.empty();
+                }
+                context.update(messageOptional.get());
             }
-            messageOptional = this.operationFactory.build(operation).applyDownOperation(messageOptional.get(), operation);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(e);
+            throw e;
+        }
+        return Optional.of(context.getMessage());
+    }
+
+    /**
+     * Compiles the operations once {@link PlanOptimizer} has reordered, pruned and fused them; see
+     * {@link MappingPlan#getExplain()} for the rewritten plan.
+     */
+    @Nonnull
+    public MappingPlan<UpMessage> compileUpOperations(@Nonnull List<UpOperation> operations) {
+        List<OperationHandler> handlers = new ArrayList<>(operations.size());
+        for (UpOperation operation : operations) {
+            handlers.add(this.operationFactory.build(operation));
+        }
+        List<PlanOptimizer.Step> steps = PlanOptimizer.optimize(operations, handlers);
+        List<CompiledOperation<UpMessage>> compiledOperations = new ArrayList<>(steps.size());
+        List<OperationMetrics> operationMetrics = new ArrayList<>(steps.size());
+        for (PlanOptimizer.Step step : steps) {
+            compiledOperations.add(step.handler.compileUpOperation(step.operation));
+            operationMetrics.add(metrics.operation(step.operation.getClass()));
+        }
+        return new MappingPlan<>(compiledOperations, PlanOptimizer.explain(steps), operationMetrics,
+                MessageContext::of, metrics, metrics::recordProduced);
+    }
+    @Nonnull
+    public MappingPlan<DownMessage> compileDownOperations(@Nonnull List<DownOperation> operations) {
+        List<CompiledOperation<DownMessage>> compiledOperations = new ArrayList<>(operations.size());
+        List<String> explain = new ArrayList<>(operations.size());
+        List<OperationMetrics> operationMetrics = new ArrayList<>(operations.size());
+        for (DownOperation operation : operations) {
+            compiledOperations.add(this.operationFactory.build(operation).compileDownOperation(operation));
+            explain.add((explain.size() + 1) + ": " + PlanOptimizer.describe(operation)
+                    + " (operation " + (explain.size() + 1) + ")");
+            operationMetrics.add(metrics.operation(operation.getClass()));
         }
-        return messageOptional;
+        return new MappingPlan<>(compiledOperations, explain, operationMetrics, MessageContext::of, metrics, downMessage -> { });
     }
-}
\ No newline at end of file
+}
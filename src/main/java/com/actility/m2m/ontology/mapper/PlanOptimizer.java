@@ -0,0 +1,238 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.ontology.mapper.operations.FilterOperation;
+import com.actility.m2m.ontology.mapper.operations.FilterPointsOperation;
+import com.actility.m2m.ontology.mapper.operations.UpExtractPointsOperation;
+import com.actility.m2m.ontology.mapper.operations.UpUpdatePointsOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPoint;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpExtractPoints;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterPointsOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpUpdatePoints;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpdatePoint;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites an uplink operation list before it is compiled, so that badly ordered profiles do less work per message:
+ * <ul>
+ * <li>message type filters are hoisted before the point operations, which never change the type of a message;</li>
+ * <li>points that a later {@code filterPoints} discards are neither extracted nor updated;</li>
+ * <li>consecutive {@code updatePoints} on distinct points are fused into one operation.</li>
+ * </ul>
+ * Only operations handled by the built-in handlers are rewritten, any other operation is a barrier. Messages that
+ * the plan keeps are mapped exactly as before; a message that the plan drops may now be dropped before an operation
+ * that would have failed on it, and discarded points are no longer validated.
+ */
+final class PlanOptimizer {
+
+    private PlanOptimizer() {
+    }
+
+    /**
+     * @param handlers the handler of each operation
+     * @return the steps to compile, in execution order
+     */
+    @Nonnull
+    static List<Step> optimize(@Nonnull List<UpOperation> operations, @Nonnull List<OperationHandler> handlers) {
+        List<Step> steps = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            steps.add(new Step(operations.get(i), handlers.get(i), i + 1));
+        }
+        hoistFilters(steps);
+        prunePoints(steps);
+        fuseUpdates(steps);
+        return steps;
+    }
+
+    /**
+     * @return one line per step, describing the operation and the rewrites it went through
+     */
+    @Nonnull
+    static List<String> explain(@Nonnull List<Step> steps) {
+        List<String> lines = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            StringBuilder line = new StringBuilder().append(i + 1).append(": ").append(describe(step.operation));
+            line.append(step.sources.size() == 1 ? " (operation " : " (operations ");
+            for (int j = 0; j < step.sources.size(); j++) {
+                line.append(j == 0 ? "" : ", ").append(step.sources.get(j));
+            }
+            for (String note : step.notes) {
+                line.append(", ").append(note);
+            }
+            lines.add(line.append(')').toString());
+        }
+        return lines;
+    }
+
+    @Nonnull
+    static String describe(@Nonnull Object operation) {
+        if (operation instanceof UpExtractPoints) {
+            return "extractPoints " + names(((UpExtractPoints) operation).points);
+        } else if (operation instanceof UpUpdatePoints) {
+            return "updatePoints " + names(((UpUpdatePoints) operation).points);
+        } else if (operation instanceof UpFilterPointsOperation) {
+            List<String> points = ((UpFilterPointsOperation) operation).points;
+            return "filterPoints " + (points == null ? "[]" : points.toString());
+        }
+        String name = operation.getClass().getSimpleName();
+        if (name.startsWith("Up") || name.startsWith("Down")) {
+            name = name.substring(name.startsWith("Up") ? 2 : 4);
+        }
+        if (name.endsWith("Operation")) {
+            name = name.substring(0, name.length() - "Operation".length());
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    @Nonnull
+    private static String names(@Nullable Map<String, ?> points) {
+        return points == null ? "[]" : points.keySet().toString();
+    }
+
+    /**
+     * Moves every filter before the point operations that precede it, keeping the filters in their order.
+     */
+    private static void hoistFilters(@Nonnull List<Step> steps) {
+        for (int i = 1; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (!step.is(FilterOperation.class)) {
+                continue;
+            }
+            int target = i;
+            while (target > 0 && isPointOperation(steps.get(target - 1))) {
+                target--;
+            }
+            if (target < i) {
+                steps.remove(i);
+                steps.add(target, step);
+                step.notes.add("hoisted");
+            }
+        }
+    }
+
+    /**
+     * Walks the plan backwards with the set of points that may still be read, {@code null} meaning all of them. An
+     * extraction whose templates read {@code points} may derive its points from any earlier one.
+     */
+    private static void prunePoints(@Nonnull List<Step> steps) {
+        Set<String> live = null;
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            Step step = steps.get(i);
+            if (step.is(FilterPointsOperation.class)) {
+                List<String> kept = ((UpFilterPointsOperation) step.operation).points;
+                if (kept == null) {
+                    live = null;
+                } else if (live == null) {
+                    live = new HashSet<>(kept);
+                } else {
+                    live.retainAll(kept);
+                }
+            } else if (step.is(UpExtractPointsOperation.class) && live != null) {
+                Map<String, JmesPathPoint> points = ((UpExtractPoints) step.operation).points;
+                Map<String, JmesPathPoint> kept = retain(points, live);
+                if (kept != null && kept.size() < points.size()) {
+                    step.operation = UpExtractPoints.newUpExtractPointsBuilder().points(kept).build();
+                    step.notes.add((points.size() - kept.size()) + " discarded points pruned");
+                }
+                if (UpExtractPointsOperation.readsPoints((UpExtractPoints) step.operation)) {
+                    live = null;
+                }
+            } else if (step.is(UpUpdatePointsOperation.class) && live != null) {
+                Map<String, UpdatePoint> points = ((UpUpdatePoints) step.operation).points;
+                Map<String, UpdatePoint> kept = retain(points, live);
+                if (kept != null && kept.size() < points.size()) {
+                    step.operation = UpUpdatePoints.newUpUpdatePointsBuilder().points(kept).build();
+                    step.notes.add((points.size() - kept.size()) + " discarded points pruned");
+                }
+            } else if (!step.is(FilterOperation.class)) {
+                live = null;
+            }
+        }
+    }
+
+    @Nullable
+    private static <T> Map<String, T> retain(@Nullable Map<String, T> points, @Nonnull Set<String> live) {
+        if (points == null) {
+            return null;
+        }
+        Map<String, T> kept = new LinkedHashMap<>();
+        for (Map.Entry<String, T> entry : points.entrySet()) {
+            if (live.contains(entry.getKey())) {
+                kept.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Fuses consecutive updates when no point is updated by both, as each point is then updated once either way.
+     */
+    private static void fuseUpdates(@Nonnull List<Step> steps) {
+        for (int i = steps.size() - 1; i > 0; i--) {
+            Step previous = steps.get(i - 1);
+            Step step = steps.get(i);
+            if (!previous.is(UpUpdatePointsOperation.class) || !step.is(UpUpdatePointsOperation.class)) {
+                continue;
+            }
+            Map<String, UpdatePoint> previousPoints = ((UpUpdatePoints) previous.operation).points;
+            Map<String, UpdatePoint> points = ((UpUpdatePoints) step.operation).points;
+            if (previousPoints == null || points == null
+                    || !Collections.disjoint(previousPoints.keySet(), points.keySet())) {
+                continue;
+            }
+            Map<String, UpdatePoint> fused = new LinkedHashMap<>(previousPoints);
+            fused.putAll(points);
+            previous.operation = UpUpdatePoints.newUpUpdatePointsBuilder().points(fused).build();
+            previous.sources.addAll(step.sources);
+            for (String note : step.notes) {
+                if (!previous.notes.contains(note)) {
+                    previous.notes.add(note);
+                }
+            }
+            if (!previous.notes.contains("fused")) {
+                previous.notes.add("fused");
+            }
+            steps.remove(i);
+        }
+    }
+
+    private static boolean isPointOperation(@Nonnull Step step) {
+        return step.is(UpExtractPointsOperation.class)
+                || step.is(UpUpdatePointsOperation.class)
+                || step.is(FilterPointsOperation.class);
+    }
+
+    static final class Step {
+        @Nonnull
+        UpOperation operation;
+        @Nonnull
+        final OperationHandler handler;
+        @Nonnull
+        final List<Integer> sources = new ArrayList<>(1);
+        @Nonnull
+        final List<String> notes = new ArrayList<>(1);
+
+        private Step(@Nonnull UpOperation operation, @Nonnull OperationHandler handler, int source) {
+            this.operation = operation;
+            this.handler = handler;
+            this.sources.add(source);
+        }
+
+        /**
+         * Matches the exact handler class: a subclass or a provider handler may behave differently.
+         */
+        private boolean is(@Nonnull Class<? extends OperationHandler> handlerClass) {
+            return handler.getClass() == handlerClass;
+        }
+    }
+}
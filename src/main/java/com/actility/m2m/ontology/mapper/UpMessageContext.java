@@ -0,0 +1,70 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.flow.data.Point;
+import com.actility.m2m.flow.data.UpMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+class UpMessageContext extends MessageContext<UpMessage> {
+
+    private static final MessageProperties<UpMessage> PROPERTIES = MessageProperties.of(UpMessage.class);
+
+    /**
+     * Properties patched in place, any other change rebuilds the view.
+     */
+    private static final Set<String> PATCHED = Collections.singleton("points");
+
+    UpMessageContext(@Nonnull UpMessage message) {
+        super(message);
+    }
+
+    @Override
+    protected boolean patch(@Nonnull ObjectNode json, @Nonnull UpMessage oldMessage, @Nonnull UpMessage newMessage) {
+        if (!PROPERTIES.sameExcept(oldMessage, newMessage, PATCHED)) {
+            return false;
+        }
+        if (oldMessage.points != newMessage.points) {
+            patchPoints(json, oldMessage.points, newMessage.points);
+        }
+        return true;
+    }
+
+    @Override
+    @Nonnull
+    protected Set<String> scopableFields() {
+        return PROPERTIES.names();
+    }
+
+    @Override
+    @Nullable
+    protected Object fieldValue(@Nonnull UpMessage message, @Nonnull String name) {
+        return PROPERTIES.get(message, name);
+    }
+
+    private static void patchPoints(@Nonnull ObjectNode json, Map<String, Point> oldPoints, Map<String, Point> newPoints) {
+        JsonNode pointsJson = json.get("points");
+        if (oldPoints == null || newPoints == null || pointsJson == null || !pointsJson.isObject()) {
+            setField(json, "points", newPoints);
+            return;
+        }
+        ObjectNode points = (ObjectNode) pointsJson;
+        Iterator<String> names = points.fieldNames();
+        while (names.hasNext()) {
+            if (!newPoints.containsKey(names.next())) {
+                names.remove();
+            }
+        }
+        for (Map.Entry<String, Point> entry : newPoints.entrySet()) {
+            if (oldPoints.get(entry.getKey()) != entry.getValue() || !points.has(entry.getKey())) {
+                setField(points, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
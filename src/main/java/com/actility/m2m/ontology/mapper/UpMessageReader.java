@@ -0,0 +1,113 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.UpMessage;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Decodes the uplinks a {@link MappingPlan} is applied to. When the plan is known not to read {@code content}, the
+ * free-form JSON of that field is skipped by the parser without building any node: its bytes are kept as a raw value
+ * and written back verbatim when the message is serialized. Every other field is decoded as usual, and plans that
+ * read {@code content} or whose fields are unknown get the regular decoding.
+ * <p>
+ * {@code packet.message} is always decoded since the message type requires an {@code ObjectNode} there.
+ */
+public final class UpMessageReader {
+
+    @Nonnull
+    private static final ObjectMapper objectMapper = ObjectMapperModule.createObjectMapper();
+    @Nonnull
+    private static final ObjectReader fullReader = objectMapper.readerFor(UpMessage.class);
+    @Nonnull
+    private static final ObjectReader projectedReader = objectMapper.copy()
+            .addMixIn(UpMessage.Builder.class, RawContentMixIn.class)
+            .readerFor(UpMessage.class);
+
+    private final boolean projected;
+
+    public UpMessageReader(@Nonnull MappingPlan<UpMessage> plan) {
+        Set<String> rootFields = plan.getRootFields();
+        this.projected = rootFields != null && !rootFields.contains("content");
+    }
+
+    /**
+     * @return whether {@code content} is kept as raw JSON
+     */
+    public boolean isProjected() {
+        return projected;
+    }
+
+    @Nonnull
+    public UpMessage read(@Nonnull byte[] body) throws IOException {
+        return read(body, 0, body.length);
+    }
+
+    @Nonnull
+    public UpMessage read(@Nonnull byte[] body, int offset, int length) throws IOException {
+        if (!projected) {
+            return fullReader.readValue(body, offset, length);
+        }
+        return projectedReader.withAttribute(Source.class, new Source(body, offset)).readValue(body, offset, length);
+    }
+
+    private static final class Source {
+        @Nonnull
+        private final byte[] bytes;
+        private final int offset;
+
+        private Source(@Nonnull byte[] bytes, int offset) {
+            this.bytes = bytes;
+            this.offset = offset;
+        }
+    }
+
+    private abstract static class RawContentMixIn {
+        @JsonDeserialize(using = RawJsonDeserializer.class)
+        public abstract UpMessage.Builder content(JsonNode content);
+    }
+
+    /**
+     * Keeps objects and arrays as the bytes they were parsed from. Scalars, and input whose byte offsets are not
+     * tracked (a character source or a non UTF-8 encoding), are decoded as regular nodes.
+     */
+    private static final class RawJsonDeserializer extends StdDeserializer<JsonNode> {
+
+        private RawJsonDeserializer() {
+            super(JsonNode.class);
+        }
+
+        @Override
+        public JsonNode deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            Source source = (Source) context.getAttribute(Source.class);
+            long start = parser.currentTokenLocation().getByteOffset();
+            if (source == null || start < 0 || !parser.currentToken().isStructStart()) {
+                return context.readTree(parser);
+            }
+            parser.skipChildren();
+            long end = parser.currentLocation().getByteOffset();
+            String raw = new String(source.bytes, source.offset + (int) start, (int) (end - start), StandardCharsets.UTF_8);
+            return JsonNodeFactory.instance.rawValueNode(new RawValue(raw));
+        }
+
+        @Override
+        @Nullable
+        public JsonNode getNullValue(DeserializationContext context) {
+            return NullNode.getInstance();
+        }
+    }
+}
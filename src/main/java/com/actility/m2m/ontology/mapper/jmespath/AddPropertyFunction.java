@@ -26,9 +26,13 @@ public class AddPropertyFunction extends BaseFunction{
     @Override
     protected <T> T callFunction(Adapter<T> runtime, List<FunctionArgument<T>> arguments) {
 
-        ObjectNode obj = (ObjectNode) arguments.get(0).value();
-        obj.set(mapper.convertValue(arguments.get(1).value(), String.class), mapper.convertValue(arguments.get(2).value(), JsonNode.class));
-        return (T) obj;
+        return (T) addProperty(arguments.get(0).value(), arguments.get(1).value(), arguments.get(2).value());
+    }
+
+    ObjectNode addProperty(Object object, Object name, Object value) {
+        ObjectNode obj = ((ObjectNode) object).deepCopy();
+        obj.set(mapper.convertValue(name, String.class), mapper.convertValue(value, JsonNode.class));
+        return obj;
     }
 
 
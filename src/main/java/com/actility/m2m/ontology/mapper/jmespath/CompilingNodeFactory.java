@@ -0,0 +1,314 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import io.burt.jmespath.Adapter;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPathType;
+import io.burt.jmespath.RuntimeConfiguration;
+import io.burt.jmespath.function.Function;
+import io.burt.jmespath.jackson.JacksonRuntime;
+import io.burt.jmespath.node.ExpressionReferenceNode;
+import io.burt.jmespath.node.Node;
+import io.burt.jmespath.node.NodeFactory;
+import io.burt.jmespath.node.StandardNodeFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds expression trees specialized for Jackson: fields, indexes, chains, projections, flattening and filters walk
+ * {@link JsonNode}s directly, and calls to {@link ToBooleanFunction}, {@link DateTimeOpFunction} and
+ * {@link AddPropertyFunction} skip the generic argument checks when the arguments have the expected types. Every
+ * other construct, and every call whose arguments would fail those checks, is built by the
+ * {@link StandardNodeFactory}, so results and errors are the ones of the {@code JacksonRuntime}.
+ */
+final class CompilingNodeFactory extends StandardNodeFactory<JsonNode> {
+
+    @Nonnull
+    private final Adapter<JsonNode> runtime;
+
+    private CompilingNodeFactory(@Nonnull Adapter<JsonNode> runtime) {
+        super(runtime);
+        this.runtime = runtime;
+    }
+
+    /**
+     * @return a runtime whose expressions are built by this factory
+     */
+    @Nonnull
+    static JacksonRuntime createRuntime(@Nonnull RuntimeConfiguration configuration) {
+        return new JacksonRuntime(configuration) {
+            @Nullable
+            private NodeFactory<JsonNode> nodeFactory;
+
+            @Override
+            public NodeFactory<JsonNode> nodeFactory() {
+                if (nodeFactory == null) {
+                    nodeFactory = new CompilingNodeFactory(this);
+                }
+                return nodeFactory;
+            }
+        };
+    }
+
+    @Override
+    public Node<JsonNode> createProperty(String name) {
+        return new PropertyNode(runtime, name);
+    }
+
+    @Override
+    public Node<JsonNode> createIndex(int index) {
+        return new IndexNode(runtime, index);
+    }
+
+    @Override
+    public Node<JsonNode> createSequence(List<Node<JsonNode>> nodes) {
+        return new SequenceNode(runtime, nodes);
+    }
+
+    @Override
+    public Node<JsonNode> createProjection(Expression<JsonNode> expression) {
+        return new ProjectionNode(runtime, expression);
+    }
+
+    @Override
+    public Node<JsonNode> createFlattenArray() {
+        return new FlattenArrayNode(runtime);
+    }
+
+    @Override
+    public Node<JsonNode> createSelection(Expression<JsonNode> test) {
+        return new SelectionNode(runtime, test);
+    }
+
+    @Override
+    public Node<JsonNode> createFunctionCall(String name, List<? extends Expression<JsonNode>> arguments) {
+        Function function = runtime.functionRegistry().getFunction(name);
+        return function == null ? super.createFunctionCall(name, arguments) : createFunctionCall(function, arguments);
+    }
+
+    @Override
+    public Node<JsonNode> createFunctionCall(Function function, List<? extends Expression<JsonNode>> arguments) {
+        Node<JsonNode> generic = super.createFunctionCall(function, arguments);
+        for (Expression<JsonNode> argument : arguments) {
+            if (argument instanceof ExpressionReferenceNode) {
+                return generic;
+            }
+        }
+        if (function instanceof ToBooleanFunction && arguments.size() == 1) {
+            return new InlinedCall(runtime, generic, arguments, values -> values[0].isNumber()
+                    ? runtime.createBoolean(ToBooleanFunction.isTrue(values[0].numberValue()))
+                    : null);
+        } else if (function instanceof DateTimeOpFunction && arguments.size() == 4) {
+            DateTimeOpFunction dateTimeOp = (DateTimeOpFunction) function;
+            return new InlinedCall(runtime, generic, arguments, values ->
+                    values[0].isTextual() && values[1].isTextual() && values[3].isTextual()
+                            && (values[2].isNumber() || values[2].isTextual())
+                            ? runtime.createString(dateTimeOp.dateTimeOp(values[0], values[1], values[2], values[3]))
+                            : null);
+        } else if (function instanceof AddPropertyFunction && arguments.size() == 3) {
+            AddPropertyFunction addProperty = (AddPropertyFunction) function;
+            return new InlinedCall(runtime, generic, arguments, values ->
+                    values[0].isObject() && values[1].isTextual() && (values[2].isTextual() || values[2].isObject())
+                            ? addProperty.addProperty(values[0], values[1], values[2])
+                            : null);
+        }
+        return generic;
+    }
+
+    /**
+     * Base of the specialized nodes: they are only compared by identity.
+     */
+    private abstract static class JsonNodeNode extends Node<JsonNode> {
+
+        private JsonNodeNode(@Nonnull Adapter<JsonNode> runtime) {
+            super(runtime);
+        }
+
+        @Override
+        protected boolean internalEquals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        protected int internalHashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    private static final class PropertyNode extends JsonNodeNode {
+        @Nonnull
+        private final String name;
+
+        private PropertyNode(@Nonnull Adapter<JsonNode> runtime, @Nonnull String name) {
+            super(runtime);
+            this.name = name;
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            JsonNode value = input.get(name);
+            return value == null ? NullNode.getInstance() : value;
+        }
+    }
+
+    private static final class IndexNode extends JsonNodeNode {
+        private final int index;
+
+        private IndexNode(@Nonnull Adapter<JsonNode> runtime, int index) {
+            super(runtime);
+            this.index = index;
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            if (input.isArray()) {
+                int i = index < 0 ? input.size() + index : index;
+                if (i >= 0 && i < input.size()) {
+                    return input.get(i);
+                }
+            }
+            return NullNode.getInstance();
+        }
+    }
+
+    private static final class SequenceNode extends JsonNodeNode {
+        @Nonnull
+        private final Node<JsonNode>[] nodes;
+
+        @SuppressWarnings("unchecked")
+        private SequenceNode(@Nonnull Adapter<JsonNode> runtime, @Nonnull List<Node<JsonNode>> nodes) {
+            super(runtime);
+            this.nodes = nodes.toArray(new Node[0]);
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            JsonNode value = input;
+            for (Node<JsonNode> node : nodes) {
+                value = node.search(value);
+            }
+            return value;
+        }
+    }
+
+    private static final class ProjectionNode extends JsonNodeNode {
+        @Nonnull
+        private final Expression<JsonNode> projection;
+
+        private ProjectionNode(@Nonnull Adapter<JsonNode> runtime, @Nonnull Expression<JsonNode> projection) {
+            super(runtime);
+            this.projection = projection;
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            if (!input.isArray()) {
+                return NullNode.getInstance();
+            }
+            ArrayNode result = JsonNodeFactory.instance.arrayNode(input.size());
+            for (JsonNode element : input) {
+                JsonNode value = projection.search(element);
+                if (runtime.typeOf(value) != JmesPathType.NULL) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class FlattenArrayNode extends JsonNodeNode {
+
+        private FlattenArrayNode(@Nonnull Adapter<JsonNode> runtime) {
+            super(runtime);
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            if (!input.isArray()) {
+                return NullNode.getInstance();
+            }
+            ArrayNode result = JsonNodeFactory.instance.arrayNode(input.size());
+            for (JsonNode element : input) {
+                if (element.isArray()) {
+                    result.addAll((ArrayNode) element);
+                } else {
+                    result.add(element);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class SelectionNode extends JsonNodeNode {
+        @Nonnull
+        private final Expression<JsonNode> test;
+
+        private SelectionNode(@Nonnull Adapter<JsonNode> runtime, @Nonnull Expression<JsonNode> test) {
+            super(runtime);
+            this.test = test;
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            if (!input.isArray()) {
+                return NullNode.getInstance();
+            }
+            ArrayNode result = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode element : input) {
+                if (runtime.isTruthy(test.search(element))) {
+                    result.add(element);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A function call evaluated without wrapping its arguments. When the arguments are not of the expected types,
+     * the generic call is evaluated instead and reports the error.
+     */
+    private static final class InlinedCall extends JsonNodeNode {
+        @Nonnull
+        private final Node<JsonNode> generic;
+        @Nonnull
+        private final Expression<JsonNode>[] arguments;
+        @Nonnull
+        private final Body body;
+
+        @SuppressWarnings("unchecked")
+        private InlinedCall(
+                @Nonnull Adapter<JsonNode> runtime,
+                @Nonnull Node<JsonNode> generic,
+                @Nonnull List<? extends Expression<JsonNode>> arguments,
+                @Nonnull Body body) {
+            super(runtime);
+            this.generic = generic;
+            this.arguments = new ArrayList<>(arguments).toArray(new Expression[0]);
+            this.body = body;
+        }
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            JsonNode[] values = new JsonNode[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].search(input);
+            }
+            JsonNode result = body.apply(values);
+            return result != null ? result : generic.search(input);
+        }
+
+        private interface Body {
+            /**
+             * @return the result, {@code null} when the arguments are not of the expected types
+             */
+            @Nullable
+            JsonNode apply(@Nonnull JsonNode[] values);
+        }
+    }
+}
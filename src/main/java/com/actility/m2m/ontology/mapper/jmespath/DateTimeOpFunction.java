@@ -27,23 +27,28 @@ public class DateTimeOpFunction extends BaseFunction {
 
     @Override
     protected <T> T callFunction(Adapter<T> runtime, List<FunctionArgument<T>> arguments) {
-        String time = mapper.convertValue(arguments.get(0).value(), String.class);
-        String operation = mapper.convertValue(arguments.get(1).value(), String.class);
-        int age = Integer.parseInt(mapper.convertValue(arguments.get(2).value(), String.class));
-        String unit = mapper.convertValue(arguments.get(3).value(), String.class);
+        return runtime.createString(dateTimeOp(
+                arguments.get(0).value(), arguments.get(1).value(), arguments.get(2).value(), arguments.get(3).value()));
+    }
+
+    String dateTimeOp(Object timeValue, Object operationValue, Object ageValue, Object unitValue) {
+        String time = mapper.convertValue(timeValue, String.class);
+        String operation = mapper.convertValue(operationValue, String.class);
+        int age = Integer.parseInt(mapper.convertValue(ageValue, String.class));
+        String unit = mapper.convertValue(unitValue, String.class);
         Operator operator = Operator.fromValue(operation);
         switch (operator) {
             case ADD:
-                return runtime.createString(add(time, age, unit));
+                return add(time, age, unit);
             case SUB:
-                return runtime.createString(subtract(time, age, unit));
+                return subtract(time, age, unit);
             default:
-                return runtime.createString("Invalid Operator");
+                return "Invalid Operator";
         }
     }
 
     public String subtract(String time, int age, String unit) {
-        OffsetDateTime currentTime = OffsetDateTime.parse(time);
+        OffsetDateTime currentTime = EventTimeParser.parse(time);
         switch (unit) {
             case "s":
                 return currentTime.minus(age, ChronoUnit.SECONDS).toString();
@@ -57,7 +62,7 @@ public class DateTimeOpFunction extends BaseFunction {
 
     public String add(String time, int age, String unit) {
 
-        OffsetDateTime currentTime = OffsetDateTime.parse(time);
+        OffsetDateTime currentTime = EventTimeParser.parse(time);
         switch (unit) {
             case "s":
                 return currentTime.plus(age, ChronoUnit.SECONDS).toString();
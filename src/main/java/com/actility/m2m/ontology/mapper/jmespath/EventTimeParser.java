@@ -0,0 +1,168 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parses event times. The RFC 3339 shapes found in uplinks ({@code 2020-01-01T10:00:00Z},
+ * {@code 2020-01-01T10:00:00.123+02:00}) are read directly, numbers are epoch seconds or milliseconds, anything else
+ * goes through {@link OffsetDateTime#parse(CharSequence)} and fails the same way. The last strings parsed on each
+ * thread are remembered, since the points of an uplink usually share the same timestamp.
+ */
+public final class EventTimeParser {
+
+    /**
+     * Integral epochs at or above this magnitude are milliseconds, below are seconds (year 5138).
+     */
+    private static final long EPOCH_MILLIS_THRESHOLD = 100_000_000_000L;
+    private static final int CACHE_SIZE = 8;
+
+    @Nonnull
+    private static final ThreadLocal<Cache> cache = ThreadLocal.withInitial(Cache::new);
+
+    private EventTimeParser() {
+    }
+
+    @Nonnull
+    public static OffsetDateTime parse(@Nonnull JsonNode node) {
+        if (node.isIntegralNumber()) {
+            long epoch = node.asLong();
+            return OffsetDateTime.ofInstant(
+                    Math.abs(epoch) < EPOCH_MILLIS_THRESHOLD ? Instant.ofEpochSecond(epoch) : Instant.ofEpochMilli(epoch),
+                    ZoneOffset.UTC);
+        }
+        if (node.isNumber()) {
+            BigDecimal epoch = node.decimalValue();
+            if (epoch.abs().compareTo(BigDecimal.valueOf(EPOCH_MILLIS_THRESHOLD)) >= 0) {
+                epoch = epoch.movePointLeft(3);
+            }
+            return OffsetDateTime.ofInstant(
+                    Instant.ofEpochSecond(
+                            epoch.longValue(), epoch.remainder(BigDecimal.ONE).movePointRight(9).longValue()),
+                    ZoneOffset.UTC);
+        }
+        return parse(node.asText());
+    }
+
+    @Nonnull
+    public static OffsetDateTime parse(@Nonnull String text) {
+        Cache threadCache = cache.get();
+        OffsetDateTime result = threadCache.get(text);
+        if (result == null) {
+            result = parseRfc3339(text);
+            if (result == null) {
+                result = OffsetDateTime.parse(text);
+            }
+            threadCache.put(text, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the date time, or {@code null} when the text is not {@code yyyy-MM-ddTHH:mm:ss[.S{1,9}](Z|+HH:mm)}
+     * or holds an out-of-range field
+     */
+    @Nullable
+    static OffsetDateTime parseRfc3339(@Nonnull String text) {
+        int length = text.length();
+        if (length < 20 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+        int position = 19;
+        int nano = 0;
+        if (text.charAt(position) == '.') {
+            int start = ++position;
+            while (position < length && position - start < 9 && isDigit(text.charAt(position))) {
+                nano = nano * 10 + (text.charAt(position++) - '0');
+            }
+            int fractionDigits = position - start;
+            if (fractionDigits == 0 || position == length || isDigit(text.charAt(position))) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+        try {
+            ZoneOffset offset;
+            char sign = text.charAt(position);
+            if (sign == 'Z' && position + 1 == length) {
+                offset = ZoneOffset.UTC;
+            } else if ((sign == '+' || sign == '-') && position + 6 == length && text.charAt(position + 3) == ':') {
+                int offsetHours = digits(text, position + 1, 2);
+                int offsetMinutes = digits(text, position + 4, 2);
+                if ((offsetHours | offsetMinutes) < 0) {
+                    return null;
+                }
+                offset = sign == '+'
+                        ? ZoneOffset.ofHoursMinutes(offsetHours, offsetMinutes)
+                        : ZoneOffset.ofHoursMinutes(-offsetHours, -offsetMinutes);
+            } else {
+                return null;
+            }
+            return OffsetDateTime.of(year, month, day, hour, minute, second, nano, offset);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(@Nonnull String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Last parsed strings of a thread, replaced in round-robin.
+     */
+    private static final class Cache {
+        @Nonnull
+        private final String[] texts = new String[CACHE_SIZE];
+        @Nonnull
+        private final OffsetDateTime[] values = new OffsetDateTime[CACHE_SIZE];
+        private int next;
+
+        @Nullable
+        private OffsetDateTime get(@Nonnull String text) {
+            for (int i = 0; i < CACHE_SIZE; i++) {
+                if (text.equals(texts[i])) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(@Nonnull String text, @Nonnull OffsetDateTime value) {
+            texts[next] = text;
+            values[next] = value;
+            next = (next + 1) % CACHE_SIZE;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.LoadingCache;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPath;
+import io.burt.jmespath.JmesPathException;
+import io.burt.jmespath.parser.ParseError;
+import io.burt.jmespath.parser.ParseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thread-safe, size-bounded cache of compiled JMESPath expressions keyed by the raw {@code {{...}}} template.
+ * Templates that fail to compile are cached as well so that a broken profile does not recompile on every message.
+ */
+public class ExpressionCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1_000;
+
+    @Nonnull
+    private final JmesPath<JsonNode> runtime;
+
+    @Nullable
+    private final JmesPath<JsonNode> compiler;
+
+    private final int compileThreshold;
+
+    @Nonnull
+    private final LoadingCache<String, Entry> cache;
+
+    public ExpressionCache(@Nonnull JmesPath<JsonNode> runtime, long maximumSize) {
+        this(runtime, null, 0, maximumSize);
+    }
+
+    /**
+     * @param compiler the runtime that compiles an expression again once it has been evaluated
+     * {@code compileThreshold} times, see {@link TieredExpression}
+     */
+    public ExpressionCache(
+            @Nonnull JmesPath<JsonNode> runtime,
+            @Nullable JmesPath<JsonNode> compiler,
+            int compileThreshold,
+            long maximumSize) {
+        this.runtime = runtime;
+        this.compiler = compiler;
+        this.compileThreshold = compileThreshold;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build(CacheLoader.from(this::compile));
+    }
+
+    /**
+     * Returns the compiled expression for the given template.
+     *
+     * @throws RuntimeException the compilation error of the template, cached from the first attempt: a new
+     * {@link ParseException} with the same errors for syntax errors, a {@link JmesPathException} with the same message
+     * otherwise
+     */
+    @Nonnull
+    public Expression<JsonNode> get(@Nonnull String template) {
+        Entry entry = cache.getUnchecked(template);
+        if (entry.failure != null) {
+            throw entry.failure.newException();
+        }
+        return entry.expression;
+    }
+
+    /**
+     * Returns the top-level message fields the template reads, {@code null} when it may read the whole message. The
+     * analysis runs once per cached template, on first request; a template that does not compile reads none.
+     */
+    @Nullable
+    Set<String> rootFields(@Nonnull String template) {
+        return cache.getUnchecked(template).rootFields.get();
+    }
+
+    @Nonnull
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Nonnull
+    public static String toExpression(@Nonnull String template) {
+        return template.replace("{{", "").replace("}}", "").replace("\"", "");
+    }
+
+    /**
+     * Plain field and index paths are walked directly, see {@link PathExpression}; any other expression is compiled
+     * by the runtime, and tiered when there is a compiler.
+     */
+    @Nonnull
+    private Entry compile(@Nonnull String template) {
+        String expression = toExpression(template);
+        PathExpression path = PathExpression.parse(expression);
+        if (path != null) {
+            return new Entry(path, null, expression);
+        }
+        try {
+            Expression<JsonNode> interpreted = runtime.compile(expression);
+            return new Entry(
+                    compiler == null ? interpreted : new TieredExpression(interpreted, expression, compiler, compileThreshold),
+                    null,
+                    expression);
+        } catch (RuntimeException e) {
+            return new Entry(null, new Failure(expression, e), expression);
+        }
+    }
+
+    private static final class Entry {
+        @Nullable
+        private final Expression<JsonNode> expression;
+        @Nullable
+        private final Failure failure;
+        @Nonnull
+        private final Supplier<Set<String>> rootFields;
+
+        private Entry(@Nullable Expression<JsonNode> expression, @Nullable Failure failure, @Nonnull String text) {
+            this.expression = expression;
+            this.failure = failure;
+            this.rootFields = Suppliers.memoize(() -> analyze(expression, text));
+        }
+
+        @Nullable
+        private static Set<String> analyze(@Nullable Expression<JsonNode> expression, @Nonnull String text) {
+            if (expression == null) {
+                return Collections.emptySet();
+            }
+            if (expression instanceof PathExpression) {
+                String field = ((PathExpression) expression).rootField();
+                return field == null ? Collections.emptySet() : Collections.singleton(field);
+            }
+            return RootFieldAnalyzer.rootFields(text);
+        }
+    }
+
+    /**
+     * What is kept of a compilation error. The exception itself is not cached: it is mutable and its stack trace
+     * belongs to the first caller, so each lookup throws a new one.
+     */
+    private static final class Failure {
+        @Nonnull
+        private final String expression;
+        @Nullable
+        private final List<ParseError> errors;
+        @Nullable
+        private final String message;
+
+        private Failure(@Nonnull String expression, @Nonnull RuntimeException error) {
+            this.expression = expression;
+            if (error instanceof ParseException) {
+                List<ParseError> parseErrors = new ArrayList<>();
+                ((ParseException) error).forEach(parseErrors::add);
+                this.errors = parseErrors;
+            } else {
+                this.errors = null;
+            }
+            this.message = error.getMessage();
+        }
+
+        @Nonnull
+        private RuntimeException newException() {
+            return errors != null ? new ParseException(expression, errors) : new JmesPathException(message);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.burt.jmespath.Expression;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Per-expression evaluation profile. Every evaluation is counted, one in {@code sampleRate} is timed and has its
+ * result size measured, so the cost of an expression is estimated from its samples. Expressions also remember which
+ * profile and point use them, as declared while they are compiled.
+ */
+public class ExpressionProfiler {
+
+    public static final int DEFAULT_SAMPLE_RATE = 64;
+    public static final int DEFAULT_MAXIMUM_EXPRESSIONS = 10_000;
+
+    @Nonnull
+    private static final ThreadLocal<String> compilingProfile = new ThreadLocal<>();
+
+    @Nonnull
+    private final Map<String, ExpressionStats> expressions = new ConcurrentHashMap<>();
+    private final int maximumExpressions;
+    private volatile int sampleRate;
+
+    public ExpressionProfiler(int sampleRate, int maximumExpressions) {
+        this.sampleRate = sampleRate;
+        this.maximumExpressions = maximumExpressions;
+    }
+
+    /**
+     * @param sampleRate one evaluation in {@code sampleRate} is timed, {@code 0} disables profiling
+     */
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Attributes the templates compiled by {@code compilation} on this thread to {@code profileId}.
+     */
+    public static <T> T compilingProfile(@Nonnull String profileId, @Nonnull Supplier<T> compilation) {
+        String previous = compilingProfile.get();
+        compilingProfile.set(profileId);
+        try {
+            return compilation.get();
+        } finally {
+            if (previous == null) {
+                compilingProfile.remove();
+            } else {
+                compilingProfile.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of the template, {@code null} once the maximum number of expressions is tracked
+     */
+    @Nullable
+    public ExpressionStats statsFor(@Nonnull String template, @Nullable String point) {
+        ExpressionStats stats = expressions.get(template);
+        if (stats == null) {
+            if (expressions.size() >= maximumExpressions) {
+                return null;
+            }
+            stats = expressions.computeIfAbsent(template, ExpressionStats::new);
+        }
+        if (point != null) {
+            String profile = compilingProfile.get();
+            stats.addUsage(profile == null ? point : profile + "/" + point);
+        }
+        return stats;
+    }
+
+    @Nonnull
+    public JsonNode search(
+            @Nullable ExpressionStats stats, @Nonnull Expression<JsonNode> expression, @Nonnull JsonNode message) {
+        int rate = sampleRate;
+        if (stats == null || rate <= 0) {
+            return expression.search(message);
+        }
+        stats.countEvaluation();
+        if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+            return expression.search(message);
+        }
+        long start = System.nanoTime();
+        JsonNode result = expression.search(message);
+        stats.recordSample(System.nanoTime() - start, result.isContainerNode() ? result.size() : result.isNull() ? 0 : 1);
+        return result;
+    }
+
+    /**
+     * Profiles a walk that resolves several templates at once, such as a {@link PropertyPathTrie}. Each template of
+     * the walk counts one evaluation; a sampled walk is timed as a whole and its time is split evenly between them.
+     *
+     * @param stats the statistics of each template, indexed as the values returned by {@code walk}
+     */
+    @Nonnull
+    public JsonNode[] searchAll(
+            @Nonnull ExpressionStats[] stats,
+            @Nonnull Function<JsonNode, JsonNode[]> walk,
+            @Nonnull JsonNode message) {
+        int rate = sampleRate;
+        if (stats.length == 0 || rate <= 0) {
+            return walk.apply(message);
+        }
+        for (ExpressionStats expressionStats : stats) {
+            if (expressionStats != null) {
+                expressionStats.countEvaluation();
+            }
+        }
+        if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+            return walk.apply(message);
+        }
+        long start = System.nanoTime();
+        JsonNode[] results = walk.apply(message);
+        long nanos = (System.nanoTime() - start) / stats.length;
+        for (int i = 0; i < stats.length; i++) {
+            if (stats[i] != null) {
+                JsonNode result = results[i];
+                stats[i].recordSample(nanos, result == null ? 0 : result.isContainerNode() ? result.size() : 1);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the {@code limit} expressions with the highest estimated total evaluation time
+     */
+    @Nonnull
+    public List<ExpressionStats> top(int limit) {
+        List<ExpressionStats> result = new ArrayList<>(expressions.values());
+        result.sort(Comparator.comparingLong(ExpressionStats::getEstimatedTotalNanos).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public void reset() {
+        expressions.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluation statistics of one {@code {{...}}} template, see {@link ExpressionProfiler}.
+ */
+public final class ExpressionStats {
+
+    private static final int MAXIMUM_USAGES = 16;
+
+    @Nonnull
+    private final String template;
+    @Nonnull
+    private final LongAdder evaluations = new LongAdder();
+    @Nonnull
+    private final LongAdder samples = new LongAdder();
+    @Nonnull
+    private final LongAdder sampledNanos = new LongAdder();
+    @Nonnull
+    private final LongAdder sampledResultSize = new LongAdder();
+    @Nonnull
+    private final Set<String> usages = ConcurrentHashMap.newKeySet();
+
+    ExpressionStats(@Nonnull String template) {
+        this.template = template;
+    }
+
+    void countEvaluation() {
+        evaluations.increment();
+    }
+
+    void recordSample(long nanos, int resultSize) {
+        samples.increment();
+        sampledNanos.add(nanos);
+        sampledResultSize.add(resultSize);
+    }
+
+    void addUsage(@Nonnull String usage) {
+        if (usages.size() < MAXIMUM_USAGES) {
+            usages.add(usage);
+        }
+    }
+
+    @Nonnull
+    public String getTemplate() {
+        return template;
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getSamples() {
+        return samples.sum();
+    }
+
+    public long getAverageNanos() {
+        long sampleCount = samples.sum();
+        return sampleCount == 0 ? 0 : sampledNanos.sum() / sampleCount;
+    }
+
+    public long getEstimatedTotalNanos() {
+        return getAverageNanos() * evaluations.sum();
+    }
+
+    public double getAverageResultSize() {
+        long sampleCount = samples.sum();
+        return sampleCount == 0 ? 0 : (double) sampledResultSize.sum() / sampleCount;
+    }
+
+    /**
+     * @return the {@code profile/point} or {@code point} names that compiled this template
+     */
+    @Nonnull
+    public List<String> getUsages() {
+        List<String> result = new ArrayList<>(usages);
+        Collections.sort(result);
+        return result;
+    }
+}
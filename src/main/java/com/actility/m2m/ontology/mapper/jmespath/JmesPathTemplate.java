@@ -0,0 +1,116 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.burt.jmespath.Expression;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A {@code {{...}}} template resolved once against the expression cache. Evaluation follows
+ * {@link JmesPathUtil#retrieveValues(JsonNode, String)}: templates without braces and null results yield {@code null}.
+ * A template that does not compile only fails when it is evaluated, as it did before being precompiled: each
+ * evaluation gets a new exception from the expression cache.
+ */
+public final class JmesPathTemplate {
+
+    @Nonnull
+    private final String template;
+
+    private final boolean isExpression;
+
+    @Nullable
+    private final Expression<JsonNode> expression;
+
+    @Nullable
+    private final ExpressionStats stats;
+
+    @Nullable
+    private final String[] path;
+
+    private JmesPathTemplate(@Nonnull String template, @Nullable String point) {
+        this.template = template;
+        this.isExpression = template.contains("{{") && template.contains("}}");
+        Expression<JsonNode> compiled = null;
+        if (isExpression) {
+            try {
+                compiled = JmesPathUtil.getExpressionCache().get(template);
+            } catch (RuntimeException e) {
+                // thrown again on evaluation
+            }
+        }
+        this.expression = compiled;
+        this.stats = isExpression ? JmesPathUtil.getExpressionProfiler().statsFor(template, point) : null;
+        this.path = compiled instanceof PathExpression ? ((PathExpression) compiled).propertyPath() : null;
+    }
+
+    @Nullable
+    public static JmesPathTemplate compile(@Nullable String template) {
+        return compile(template, null);
+    }
+
+    /**
+     * @param point the point the template belongs to, reported by the {@link ExpressionProfiler}
+     */
+    @Nullable
+    public static JmesPathTemplate compile(@Nullable String template, @Nullable String point) {
+        return template == null ? null : new JmesPathTemplate(template, point);
+    }
+
+    @Nonnull
+    public String getTemplate() {
+        return template;
+    }
+
+    public boolean isExpression() {
+        return isExpression;
+    }
+
+    /**
+     * @return the property names when the expression is a plain path such as {@code packet.message.temperature},
+     * {@code null} otherwise
+     */
+    @Nullable
+    String[] path() {
+        return path;
+    }
+
+    /**
+     * @return the profiler statistics of the expression, {@code null} when it is not profiled
+     */
+    @Nullable
+    ExpressionStats stats() {
+        return stats;
+    }
+
+    /**
+     * @return the top-level message fields the template reads, {@code null} when it may read the whole message.
+     * Templates that are not expressions or do not compile read none.
+     */
+    @Nullable
+    public Set<String> rootFields() {
+        return isExpression ? JmesPathUtil.getExpressionCache().rootFields(template) : Collections.emptySet();
+    }
+
+    @Nullable
+    public JsonNode retrieveValues(@Nonnull JsonNode message) {
+        if (!isExpression) {
+            return null;
+        }
+        Expression<JsonNode> compiled = expression != null ? expression : JmesPathUtil.getExpressionCache().get(template);
+        JsonNode searchResult = JmesPathUtil.getExpressionProfiler().search(stats, compiled, message);
+        return searchResult.isNull() ? null : searchResult;
+    }
+
+    @Nullable
+    public static JsonNode retrieveValues(@Nonnull JsonNode message, @Nullable JmesPathTemplate template) {
+        return template == null ? null : template.retrieveValues(message);
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
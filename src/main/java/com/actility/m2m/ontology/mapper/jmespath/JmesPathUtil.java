@@ -1,12 +1,8 @@
 package com.actility.m2m.ontology.mapper.jmespath;
 
-import com.actility.m2m.commons.service.mapper.JsonMapper;
-import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.Record;
-import com.actility.m2m.ontology.mapper.MessageExtractionException;
 import com.actility.m2m.ontology.mapper.PointExtractionException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.burt.jmespath.Expression;
 import io.burt.jmespath.JmesPath;
 import io.burt.jmespath.RuntimeConfiguration;
@@ -15,35 +11,55 @@ import io.burt.jmespath.jackson.JacksonRuntime;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class JmesPathUtil {
 
-    public static JmesPath<JsonNode> jmespath;
-    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+    public static final JmesPath<JsonNode> jmespath = createJmesPath();
+    private static final ExpressionCache expressionCache = new ExpressionCache(
+            jmespath,
+            CompilingNodeFactory.createRuntime(createConfiguration()),
+            ExpressionCache.DEFAULT_COMPILE_THRESHOLD,
+            ExpressionCache.DEFAULT_MAXIMUM_SIZE);
+    private static final ExpressionProfiler expressionProfiler =
+            new ExpressionProfiler(ExpressionProfiler.DEFAULT_SAMPLE_RATE, ExpressionProfiler.DEFAULT_MAXIMUM_EXPRESSIONS);
 
+    private static JmesPath<JsonNode> createJmesPath() {
+        return new JacksonRuntime(createConfiguration());
+    }
+
+    /**
+     * @deprecated {@link #jmespath} is created when the class is loaded, this method does nothing
+     */
+    @Deprecated
     public static void getJmesPathObject() {
-        if (jmespath == null) {
-            FunctionRegistry defaultFunctions = FunctionRegistry.defaultRegistry();
-            FunctionRegistry customFunctions = defaultFunctions.extend(new ToBooleanFunction(), new DateTimeOpFunction(), new AddPropertyFunction());
-            RuntimeConfiguration configuration =
-                    new RuntimeConfiguration.Builder().withFunctionRegistry(customFunctions).build();
-            jmespath = new JacksonRuntime(configuration);
-        }
     }
+
+    static RuntimeConfiguration createConfiguration() {
+        FunctionRegistry defaultFunctions = FunctionRegistry.defaultRegistry();
+        FunctionRegistry customFunctions = defaultFunctions.extend(new ToBooleanFunction(), new DateTimeOpFunction(), new AddPropertyFunction());
+        return new RuntimeConfiguration.Builder().withFunctionRegistry(customFunctions).build();
+    }
+
+    @Nonnull
+    public static ExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    @Nonnull
+    public static ExpressionProfiler getExpressionProfiler() {
+        return expressionProfiler;
+    }
+
     @Nullable
     public static JsonNode retrieveValues(@Nonnull JsonNode message, @Nullable String jmesPath) {
-        getJmesPathObject();
         if (jmesPath == null) {
             return null;
         }
         if (jmesPath.contains("{{") && jmesPath.contains("}}")) {
-            String str = jmesPath.replace("{{", "").replace("}}", "");
-            Expression<JsonNode> expression = jmespath.compile(str.replace("\"", ""));
-            JsonNode searchResult = expression.search(message);
+            Expression<JsonNode> expression = expressionCache.get(jmesPath);
+            JsonNode searchResult =
+                    expressionProfiler.search(expressionProfiler.statsFor(jmesPath, null), expression, message);
             if (!searchResult.isNull()) {
                 return searchResult;
             }
@@ -51,151 +67,121 @@ public class JmesPathUtil {
         return null;
     }
 
+    /**
+     * Builds the records of a point in a single pass over the extracted nodes. An array holds one entry per record,
+     * any other node is a single entry. Object and array values are copied, since the extracted nodes may belong to
+     * the message view that later operations patch in place; scalar values are immutable and shared.
+     */
     @Nonnull
     public static Optional<List<Record>> extractRecords(
             PointParams pointParams, String point) {
-        List<JsonNode> value = toArray(pointParams.values);
-        List<JsonNode> lng = toArray(pointParams.longitude);
-        List<JsonNode> lat = toArray(pointParams.latitude);
-        List<JsonNode> alt = toArray(pointParams.altitude);
-        List<JsonNode> eventTime = toArray(pointParams.eventTime);
-
-        checkCardinality(pointParams, value, lng, lat, alt, eventTime, point);
-        if (!value.isEmpty() && !lng.isEmpty() && !alt.isEmpty()) {
-            return Optional.of(IntStream
-                    .range(0, lng.size())
-                    .mapToObj(i -> Record.newRecordBuilder()
-                            .eventTime(
-                                    OffsetDateTime.parse(eventTime.get(i).asText()))
-                            .value(jsonMapper.toJsonNode(value.get(i)))
-                            .coordinates(Arrays.asList(lng.get(i).asDouble(),
-                                    lat.get(i).asDouble(),
-                                    alt.get(i).asDouble()))
-                            .build())
-                    .collect(Collectors.toList()));
-        } else if (!value.isEmpty() && !lng.isEmpty()) {
-            return Optional.of(IntStream
-                    .range(0, lng.size())
-                    .mapToObj(i -> Record.newRecordBuilder()
-                            .eventTime(
-                                    OffsetDateTime.parse(eventTime.get(i).asText()))
-                            .value(jsonMapper.toJsonNode(value.get(i)))
-                            .coordinates(Arrays.asList(lng.get(i).asDouble(),
-                                    lat.get(i).asDouble()))
-                            .build())
-                    .collect(Collectors.toList()));
-        } else if (!lng.isEmpty() && !alt.isEmpty()) {
-            return Optional.of(IntStream
-                    .range(0, lng.size())
-                    .mapToObj(i -> Record.newRecordBuilder()
-                            .eventTime(
-                                    OffsetDateTime.parse(eventTime.get(i).asText()))
-                            .coordinates(Arrays.asList(lng.get(i).asDouble(),
-                                    lat.get(i).asDouble(),
-                                    alt.get(i).asDouble()))
-                            .build())
-                    .collect(Collectors.toList()));
-        } else if (!lng.isEmpty()) {
-            return Optional.of(IntStream
-                    .range(0, lng.size())
-                    .mapToObj(i -> Record.newRecordBuilder()
-                            .eventTime(
-                                    OffsetDateTime.parse(eventTime.get(i).asText()))
-                            .coordinates(Arrays.asList(lng.get(i).asDouble(),
-                                    lat.get(i).asDouble()))
-                            .build())
-                    .collect(Collectors.toList()));
-        } else if (!value.isEmpty()) {
-            return Optional.of(IntStream
-                    .range(0, value.size())
-                    .mapToObj(i -> Record.newRecordBuilder()
-                            .eventTime(
-                                    OffsetDateTime.parse(eventTime.get(i).asText()))
-                            .value(jsonMapper.toJsonNode(value.get(i)))
-                            .build())
-                    .collect(Collectors.toList()));
+        int valueCount = size(pointParams.values);
+        int lngCount = size(pointParams.longitude);
+        int latCount = size(pointParams.latitude);
+        int altCount = size(pointParams.altitude);
+        int eventTimeCount = size(pointParams.eventTime);
+
+        checkCardinality(pointParams, valueCount, lngCount, latCount, altCount, eventTimeCount, point);
+        boolean hasValue = valueCount != 0;
+        boolean hasCoordinates = lngCount != 0;
+        boolean hasAltitude = altCount != 0;
+        int count = hasCoordinates ? lngCount : valueCount;
+        if (count == 0) {
+            return Optional.empty();
+        }
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Record.Builder record = Record.newRecordBuilder()
+                    .eventTime(EventTimeParser.parse(element(pointParams.eventTime, eventTimeCount, i)));
+            if (hasValue) {
+                JsonNode value = element(pointParams.values, valueCount, i);
+                record.value(value.isContainerNode() ? value.deepCopy() : value);
+            }
+            if (hasCoordinates) {
+                double lng = element(pointParams.longitude, lngCount, i).asDouble();
+                double lat = element(pointParams.latitude, latCount, i).asDouble();
+                record.coordinates(hasAltitude
+                        ? Arrays.asList(lng, lat, element(pointParams.altitude, altCount, i).asDouble())
+                        : Arrays.asList(lng, lat));
+            }
+            records.add(record.build());
         }
+        return Optional.of(records);
+    }
+
+    private static int size(@Nullable JsonNode node) {
+        if (node == null) {
+            return 0;
+        }
+        return node.isArray() ? node.size() : 1;
+    }
 
-        return Optional.empty();
+    @Nonnull
+    private static JsonNode element(@Nullable JsonNode node, int size, int index) {
+        if (node == null || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return node.isArray() ? node.get(index) : node;
     }
 
+    /**
+     * @deprecated the records are built from the extracted nodes directly, see {@link #extractRecords}
+     */
+    @Deprecated
     public static List<JsonNode> toArray(JsonNode point) {
         if (point == null) {
             return Collections.emptyList();
         } else if (point.isArray()) {
-            return Arrays.asList(jsonMapper.fromJson(point, JsonNode[].class));
+            List<JsonNode> elements = new ArrayList<>(point.size());
+            point.forEach(elements::add);
+            return elements;
         } else {
             return Collections.singletonList(point);
         }
     }
 
+    /**
+     * @deprecated use {@link #checkCardinality(PointParams, int, int, int, int, int, String)} with the sizes
+     */
+    @Deprecated
     public static void checkCardinality(PointParams pointParams, List<JsonNode> value, List<JsonNode> lng, List<JsonNode> lat, List<JsonNode> alt, List<JsonNode> eventTime, String point) {
+        checkCardinality(pointParams, value.size(), lng.size(), lat.size(), alt.size(), eventTime.size(), point);
+    }
+
+    public static void checkCardinality(PointParams pointParams, int value, int lng, int lat, int alt, int eventTime, String point) {
         if (pointParams.isValue) {
-            if (!value.isEmpty() && value.size() != eventTime.size()) {
+            if (value != 0 && value != eventTime) {
                 throw new PointExtractionException("there is a mismatch in cardinality for 'value' and 'eventTime'", point);
             }
         }
         if (pointParams.isCoordinate) {
-            if (!lng.isEmpty() && lng.size() != eventTime.size()) {
+            if (lng != 0 && lng != eventTime) {
                 throw new PointExtractionException(
                         "there is a mismatch in cardinality between 'coordinates' and 'eventTime' fields", point);
-            } else if (lng.size() != lat.size() || (pointParams.isAltitude && lng.size() != alt.size())) {
+            } else if (lng != lat || (pointParams.isAltitude && lng != alt)) {
                 throw new PointExtractionException(
                         "there is a mismatch in cardinality between 'latitude' and 'longitude' and 'altitude' fields", point);
             }
         }
         if (pointParams.isValue && pointParams.isCoordinate) {
-            if (value.size() != lng.size()) {
+            if (value != lng) {
                 throw new PointExtractionException("there is a mismatch in cardinality for 'value' and 'coordinates'", point);
             }
         }
 
     }
 
+    /**
+     * Compiles and renders a driver message template, see {@link JsonTemplate#compileMessage(JsonNode)}.
+     */
     public static JsonNode extractMessage(JsonNode message, JsonNode operation) {
-        if (operation.isValueNode() && operation.asText().contains("{{") && operation.asText().contains("}}")) {
-            JsonNode retrievedJmesValue = retrieveValues(message, operation.asText());
-            if(retrievedJmesValue!=null && retrievedJmesValue.isObject()){
-                return retrievedJmesValue;
-            }else {
-                throw new MessageExtractionException("expected object for 'message' but returned value node or null");  }
-        }
-        if (operation.isValueNode()) {
-            throw new MessageExtractionException("expected object but is a value node");
-        }
-        return extractMessageRecursion(message, operation);
+        return JsonTemplate.compileMessage(operation).render(message);
     }
+
+    /**
+     * Compiles and renders a command input template, see {@link JsonTemplate#compileCommands(JsonNode)}.
+     */
     public static JsonNode extractCommands(JsonNode message, JsonNode operation) {
-        if (operation.isValueNode() && operation.asText().contains("{{") && operation.asText().contains("}}")) {
-            JsonNode retrievedJmesValue = retrieveValues(message, operation.asText());
-            if(retrievedJmesValue!=null){
-                return retrievedJmesValue;
-            }else {
-                throw new MessageExtractionException("retrieved value is null");  }
-        }
-        if (operation.isValueNode()) {
-            return operation;
-        }
-        return extractMessageRecursion(message, operation);
-    }
-    public static JsonNode extractMessageRecursion(JsonNode message, JsonNode operation){
-        ObjectNode returnJson = ObjectMapperModule.createObjectMapper().createObjectNode();
-        Iterator<Map.Entry<String, JsonNode>> iterator = operation.fields();
-        while (iterator.hasNext()) {
-            Map.Entry<String, JsonNode> entry = iterator.next();
-            if (!entry.getValue().isValueNode()) {
-                returnJson.set(entry.getKey(), extractMessageRecursion(message, entry.getValue()));
-            } else if (entry.getValue().asText().contains("{{") && entry.getValue().asText().contains("}}")) {
-                JsonNode value = retrieveValues(message, entry.getValue().asText());
-                if (value != null) {
-                    returnJson.set(entry.getKey(), value);
-                } else {
-                    throw new MessageExtractionException("nothing could be extracted from the jmes expression, entry.getValue().asText()");
-                }
-            }else{
-                returnJson.set(entry.getKey(), entry.getValue());
-            }
-        }
-        return returnJson;
+        return JsonTemplate.compileCommands(operation).render(message);
     }
 }
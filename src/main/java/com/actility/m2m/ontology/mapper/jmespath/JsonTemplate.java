@@ -0,0 +1,204 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.actility.m2m.ontology.mapper.MessageExtractionException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JSON operation template compiled once into constant subtrees and expression slots. Rendering only evaluates the
+ * expressions and creates the objects that hold them; constant subtrees are shared by every rendering, so nodes below
+ * the rendered root must not be modified. The root itself is always a fresh object, copied when the whole template
+ * is constant or when it is an expression that selects an object of the message, so callers may add or replace its
+ * fields. Templates render as {@link JmesPathUtil#extractMessage(JsonNode, JsonNode)} and
+ * {@link JmesPathUtil#extractCommands(JsonNode, JsonNode)} always did, errors included.
+ */
+public abstract class JsonTemplate {
+
+    private JsonTemplate() {
+    }
+
+    /**
+     * Compiles a driver message template: either an expression producing an object, or an object whose leaves may
+     * be expressions.
+     */
+    @Nonnull
+    public static JsonTemplate compileMessage(@Nonnull JsonNode operation) {
+        if (operation.isValueNode() && isExpression(operation.asText())) {
+            return new ObjectExpression(JmesPathTemplate.compile(operation.asText()));
+        }
+        if (operation.isValueNode()) {
+            return new Failure("expected object but is a value node");
+        }
+        return compileRoot(operation);
+    }
+
+    /**
+     * Compiles a command input template: an expression, a constant value, or an object whose leaves may be
+     * expressions.
+     */
+    @Nonnull
+    public static JsonTemplate compileCommands(@Nonnull JsonNode operation) {
+        if (operation.isValueNode() && isExpression(operation.asText())) {
+            return new Expression(JmesPathTemplate.compile(operation.asText()), "retrieved value is null");
+        }
+        if (operation.isValueNode()) {
+            return new Constant(operation);
+        }
+        return compileRoot(operation);
+    }
+
+    @Nonnull
+    public abstract JsonNode render(@Nonnull JsonNode message);
+
+    @Nonnull
+    private static JsonTemplate compileRoot(@Nonnull JsonNode operation) {
+        JsonTemplate template = compileObject(operation);
+        return template instanceof Constant ? new ConstantRoot(((Constant) template).value) : template;
+    }
+
+    @Nonnull
+    private static JsonTemplate compileObject(@Nonnull JsonNode operation) {
+        List<String> names = new ArrayList<>(operation.size());
+        List<JsonTemplate> values = new ArrayList<>(operation.size());
+        boolean constant = true;
+        Iterator<Map.Entry<String, JsonNode>> iterator = operation.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> entry = iterator.next();
+            JsonTemplate value;
+            if (!entry.getValue().isValueNode()) {
+                value = compileObject(entry.getValue());
+            } else if (isExpression(entry.getValue().asText())) {
+                value = new Expression(
+                        JmesPathTemplate.compile(entry.getValue().asText()),
+                        "nothing could be extracted from the jmes expression, entry.getValue().asText()");
+            } else {
+                value = new Constant(entry.getValue());
+            }
+            constant &= value instanceof Constant;
+            names.add(entry.getKey());
+            values.add(value);
+        }
+        ObjectTemplate object = new ObjectTemplate(names.toArray(new String[0]), values.toArray(new JsonTemplate[0]));
+        return constant ? new Constant(object.render(JsonNodeFactory.instance.nullNode())) : object;
+    }
+
+    private static boolean isExpression(@Nonnull String text) {
+        return text.contains("{{") && text.contains("}}");
+    }
+
+    private static final class Constant extends JsonTemplate {
+        @Nonnull
+        private final JsonNode value;
+
+        private Constant(@Nonnull JsonNode value) {
+            this.value = value;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            return value;
+        }
+    }
+
+    private static final class ConstantRoot extends JsonTemplate {
+        @Nonnull
+        private final JsonNode value;
+
+        private ConstantRoot(@Nonnull JsonNode value) {
+            this.value = value;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            return value.deepCopy();
+        }
+    }
+
+    private static final class Expression extends JsonTemplate {
+        @Nullable
+        private final JmesPathTemplate template;
+        @Nonnull
+        private final String missingMessage;
+
+        private Expression(@Nullable JmesPathTemplate template, @Nonnull String missingMessage) {
+            this.template = template;
+            this.missingMessage = missingMessage;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            JsonNode value = JmesPathTemplate.retrieveValues(message, template);
+            if (value == null) {
+                throw new MessageExtractionException(missingMessage);
+            }
+            return value;
+        }
+    }
+
+    private static final class ObjectExpression extends JsonTemplate {
+        @Nullable
+        private final JmesPathTemplate template;
+
+        private ObjectExpression(@Nullable JmesPathTemplate template) {
+            this.template = template;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            JsonNode value = JmesPathTemplate.retrieveValues(message, template);
+            if (value == null || !value.isObject()) {
+                throw new MessageExtractionException("expected object for 'message' but returned value node or null");
+            }
+            return value.deepCopy();
+        }
+    }
+
+    private static final class Failure extends JsonTemplate {
+        @Nonnull
+        private final String message;
+
+        private Failure(@Nonnull String message) {
+            this.message = message;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            throw new MessageExtractionException(this.message);
+        }
+    }
+
+    private static final class ObjectTemplate extends JsonTemplate {
+        @Nonnull
+        private final String[] names;
+        @Nonnull
+        private final JsonTemplate[] values;
+
+        private ObjectTemplate(@Nonnull String[] names, @Nonnull JsonTemplate[] values) {
+            this.names = names;
+            this.values = values;
+        }
+
+        @Override
+        @Nonnull
+        public JsonNode render(@Nonnull JsonNode message) {
+            ObjectNode result = JsonNodeFactory.instance.objectNode();
+            for (int i = 0; i < names.length; i++) {
+                result.set(names[i], values[i].render(message));
+            }
+            return result;
+        }
+    }
+}
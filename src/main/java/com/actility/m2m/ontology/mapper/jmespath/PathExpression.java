@@ -0,0 +1,132 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import io.burt.jmespath.Expression;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JMESPath expression made only of unquoted fields and indexes, such as {@code time} or
+ * {@code packet.message.measures[0].value}, evaluated by walking the JSON tree directly instead of going through the
+ * interpreter. Results match the {@code JacksonRuntime}: a field of a non-object, an index of a non-array or out of
+ * bounds and a missing field all yield a JSON null, negative indexes count from the end, and nodes are returned
+ * without being copied.
+ */
+final class PathExpression implements Expression<JsonNode> {
+
+    private static final int MAXIMUM_INDEX_DIGITS = 9;
+
+    /**
+     * Field names, or {@code null} where the step is an index.
+     */
+    @Nonnull
+    private final String[] fields;
+    @Nonnull
+    private final int[] indexes;
+    @Nullable
+    private final String[] propertyPath;
+
+    private PathExpression(@Nonnull List<String> fields, @Nonnull List<Integer> indexes) {
+        this.fields = fields.toArray(new String[0]);
+        this.indexes = new int[indexes.size()];
+        boolean properties = true;
+        for (int i = 0; i < this.indexes.length; i++) {
+            this.indexes[i] = indexes.get(i);
+            properties &= this.fields[i] != null;
+        }
+        this.propertyPath = properties ? this.fields : null;
+    }
+
+    /**
+     * @return the path, {@code null} when the expression is anything else than fields and indexes
+     */
+    @Nullable
+    static PathExpression parse(@Nonnull String expression) {
+        String text = expression.trim();
+        List<String> fields = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        int position = 0;
+        boolean afterDot = false;
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (isIdentifierStart(c) && (afterDot || fields.isEmpty())) {
+                int start = position++;
+                while (position < text.length() && isIdentifierPart(text.charAt(position))) {
+                    position++;
+                }
+                fields.add(text.substring(start, position));
+                indexes.add(0);
+            } else if (c == '[' && !afterDot) {
+                int start = ++position;
+                if (position < text.length() && text.charAt(position) == '-') {
+                    position++;
+                }
+                int digits = position;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                if (position == digits || position - digits > MAXIMUM_INDEX_DIGITS
+                        || position >= text.length() || text.charAt(position) != ']') {
+                    return null;
+                }
+                fields.add(null);
+                indexes.add(Integer.parseInt(text.substring(start, position++)));
+            } else {
+                return null;
+            }
+            afterDot = false;
+            if (position < text.length() && text.charAt(position) == '.') {
+                afterDot = true;
+                position++;
+            } else if (position < text.length() && text.charAt(position) != '[') {
+                return null;
+            }
+        }
+        return fields.isEmpty() || afterDot ? null : new PathExpression(fields, indexes);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the field names when the path has no index, {@code null} otherwise
+     */
+    @Nullable
+    String[] propertyPath() {
+        return propertyPath;
+    }
+
+    /**
+     * @return the field read from the input, {@code null} when the path starts with an index
+     */
+    @Nullable
+    String rootField() {
+        return fields[0];
+    }
+
+    @Override
+    @Nonnull
+    public JsonNode search(@Nonnull JsonNode input) {
+        JsonNode current = input;
+        for (int i = 0; i < fields.length && current != null; i++) {
+            if (fields[i] != null) {
+                current = current.get(fields[i]);
+            } else if (current.isArray()) {
+                int index = indexes[i] < 0 ? current.size() + indexes[i] : indexes[i];
+                current = index >= 0 ? current.get(index) : null;
+            } else {
+                current = null;
+            }
+        }
+        return current == null ? NullNode.getInstance() : current;
+    }
+}
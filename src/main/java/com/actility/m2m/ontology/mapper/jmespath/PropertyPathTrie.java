@@ -0,0 +1,77 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The plain property paths of several templates merged by common prefix, so that one walk over a message resolves
+ * all of them. {@code packet.message.temperature} and {@code packet.message.humidity} read {@code packet.message}
+ * once. Results match {@link JmesPathTemplate#retrieveValues(JsonNode)}: a missing property or a JSON null is
+ * {@code null}.
+ * <p>
+ * Templates are added while an operation is compiled; the trie is only read afterwards.
+ */
+public final class PropertyPathTrie {
+
+    @Nonnull
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * @return the slot of the template in the array returned by {@link #evaluate(JsonNode)}, {@code -1} when the
+     * template is not a plain property path
+     */
+    public int add(@Nullable JmesPathTemplate template) {
+        String[] path = template == null ? null : template.path();
+        if (path == null) {
+            return -1;
+        }
+        Node node = root;
+        for (String property : path) {
+            node = node.children.computeIfAbsent(property, name -> new Node());
+        }
+        if (node.slot < 0) {
+            node.slot = size++;
+        }
+        return node.slot;
+    }
+
+    /**
+     * @return the value of every path, indexed by slot
+     */
+    @Nonnull
+    public JsonNode[] evaluate(@Nonnull JsonNode message) {
+        JsonNode[] results = new JsonNode[size];
+        walk(root, message, results);
+        return results;
+    }
+
+    private static void walk(@Nonnull Node node, @Nonnull JsonNode current, @Nonnull JsonNode[] results) {
+        if (!current.isObject()) {
+            return;
+        }
+        for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+            JsonNode child = current.get(entry.getKey());
+            if (child == null || child.isNull()) {
+                continue;
+            }
+            Node childNode = entry.getValue();
+            if (childNode.slot >= 0) {
+                results[childNode.slot] = child;
+            }
+            if (!childNode.children.isEmpty()) {
+                walk(childNode, child, results);
+            }
+        }
+    }
+
+    private static final class Node {
+        @Nonnull
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private int slot = -1;
+    }
+}
@@ -0,0 +1,355 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.burt.jmespath.Adapter;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.RuntimeConfiguration;
+import io.burt.jmespath.function.Function;
+import io.burt.jmespath.jackson.JacksonRuntime;
+import io.burt.jmespath.node.CreateObjectNode;
+import io.burt.jmespath.node.Node;
+import io.burt.jmespath.node.NodeFactory;
+import io.burt.jmespath.node.Operator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the root fields an expression reads when it is evaluated against a JSON object, so that the object only
+ * needs to hold those fields. The expression is parsed into scope nodes that track whether their input is the root
+ * object: only fields taken from the root are recorded, and any construct that sees the root as a whole, such as
+ * {@code @} passed to a function, {@code *} or an expression returning the root, requires every field.
+ */
+final class RootFieldAnalyzer {
+
+    @Nonnull
+    private static final JacksonRuntime analyzer = createRuntime(JmesPathUtil.createConfiguration());
+
+    private RootFieldAnalyzer() {
+    }
+
+    /**
+     * @return the root fields read by the expression, {@code null} when it may read all of them
+     */
+    @Nullable
+    static Set<String> rootFields(@Nonnull String expression) {
+        Expression<JsonNode> compiled;
+        try {
+            compiled = analyzer.compile(expression);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (!(compiled instanceof Scope)) {
+            return null;
+        }
+        Result result = ((Scope) compiled).analyze(true);
+        return result.root || result.fields == null ? null : Collections.unmodifiableSet(result.fields);
+    }
+
+    @Nonnull
+    private static JacksonRuntime createRuntime(@Nonnull RuntimeConfiguration configuration) {
+        return new JacksonRuntime(configuration) {
+            @Nullable
+            private NodeFactory<JsonNode> nodeFactory;
+
+            @Override
+            public NodeFactory<JsonNode> nodeFactory() {
+                if (nodeFactory == null) {
+                    nodeFactory = new ScopeFactory(this);
+                }
+                return nodeFactory;
+            }
+        };
+    }
+
+    /**
+     * The fields read from the root, {@code null} for all of them, and whether the output may be the root itself.
+     */
+    private static final class Result {
+        @Nonnull
+        private static final Result NONE = new Result(Collections.emptySet(), false);
+        @Nonnull
+        private static final Result ALL = new Result(null, false);
+
+        @Nullable
+        private final Set<String> fields;
+        private final boolean root;
+
+        private Result(@Nullable Set<String> fields, boolean root) {
+            this.fields = fields;
+            this.root = root;
+        }
+
+        @Nonnull
+        private Result union(@Nonnull Result other, boolean root) {
+            if (fields == null || other.fields == null) {
+                return new Result(null, root);
+            }
+            Set<String> union = new HashSet<>(fields);
+            union.addAll(other.fields);
+            return new Result(union, root);
+        }
+    }
+
+    private abstract static class Scope extends Node<JsonNode> {
+
+        private Scope(@Nonnull Adapter<JsonNode> runtime) {
+            super(runtime);
+        }
+
+        /**
+         * @param root whether the input is the root object
+         */
+        @Nonnull
+        abstract Result analyze(boolean root);
+
+        @Override
+        public JsonNode search(JsonNode input) {
+            throw new UnsupportedOperationException("scope nodes are only analyzed");
+        }
+
+        @Override
+        protected boolean internalEquals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        protected int internalHashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    @Nonnull
+    private static Result analyze(@Nonnull Expression<JsonNode> expression, boolean root) {
+        return expression instanceof Scope ? ((Scope) expression).analyze(root) : Result.ALL;
+    }
+
+    /**
+     * Analyzes expressions evaluated against the same input, whose results become part of a new value.
+     */
+    @Nonnull
+    private static Result analyzeOperands(@Nonnull List<? extends Expression<JsonNode>> operands, boolean root) {
+        Result result = Result.NONE;
+        for (Expression<JsonNode> operand : operands) {
+            if (operand instanceof Reference) {
+                continue;
+            }
+            Result operandResult = analyze(operand, root);
+            if (operandResult.root) {
+                return Result.ALL;
+            }
+            result = result.union(operandResult, false);
+        }
+        return result;
+    }
+
+    private static final class ScopeFactory implements NodeFactory<JsonNode> {
+        @Nonnull
+        private final Adapter<JsonNode> runtime;
+
+        private ScopeFactory(@Nonnull Adapter<JsonNode> runtime) {
+            this.runtime = runtime;
+        }
+
+        @Override
+        public Node<JsonNode> createCurrent() {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return new Result(Collections.emptySet(), root);
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createProperty(String name) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return root ? new Result(Collections.singleton(name), false) : Result.NONE;
+                }
+            };
+        }
+
+        /**
+         * Indexes, slices, flattening, projections and filters yield null on an object, and their nested expressions
+         * are applied to array elements, which are never the root.
+         */
+        @Nonnull
+        private Node<JsonNode> arrayOperation() {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return Result.NONE;
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createIndex(int index) {
+            return arrayOperation();
+        }
+
+        @Override
+        public Node<JsonNode> createSlice(Integer start, Integer stop, Integer step) {
+            return arrayOperation();
+        }
+
+        @Override
+        public Node<JsonNode> createProjection(Expression<JsonNode> expression) {
+            return arrayOperation();
+        }
+
+        @Override
+        public Node<JsonNode> createFlattenArray() {
+            return arrayOperation();
+        }
+
+        @Override
+        public Node<JsonNode> createSelection(Expression<JsonNode> test) {
+            return arrayOperation();
+        }
+
+        @Override
+        public Node<JsonNode> createFlattenObject() {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return root ? Result.ALL : Result.NONE;
+                }
+            };
+        }
+
+        /**
+         * Comparing the root or negating it reads the whole of it.
+         */
+        @Override
+        public Node<JsonNode> createComparison(Operator operator, Expression<JsonNode> left, Expression<JsonNode> right) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return analyzeOperands(Arrays.asList(left, right), root);
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createOr(Expression<JsonNode> left, Expression<JsonNode> right) {
+            return createAnd(left, right);
+        }
+
+        /**
+         * Both {@code &&} and {@code ||} return one of their operands.
+         */
+        @Override
+        public Node<JsonNode> createAnd(Expression<JsonNode> left, Expression<JsonNode> right) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    Result leftResult = RootFieldAnalyzer.analyze(left, root);
+                    Result rightResult = RootFieldAnalyzer.analyze(right, root);
+                    return leftResult.union(rightResult, leftResult.root || rightResult.root);
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createNegate(Expression<JsonNode> negated) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return analyzeOperands(Collections.singletonList(negated), root);
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createFunctionCall(String name, List<? extends Expression<JsonNode>> arguments) {
+            return createCreateArray(arguments);
+        }
+
+        /**
+         * A function may read its arguments as a whole, so passing it the root requires every field. Expression
+         * references are applied to values the function takes from its other arguments.
+         */
+        @Override
+        public Node<JsonNode> createFunctionCall(Function function, List<? extends Expression<JsonNode>> arguments) {
+            return createCreateArray(arguments);
+        }
+
+        @Override
+        public Node<JsonNode> createExpressionReference(Expression<JsonNode> expression) {
+            return new Reference(runtime);
+        }
+
+        @Override
+        public Node<JsonNode> createString(String string) {
+            return createJsonLiteral(string);
+        }
+
+        /**
+         * The expressions of the entries cannot be read back, so a multi-select hash may read every field.
+         */
+        @Override
+        public Node<JsonNode> createCreateObject(List<CreateObjectNode.Entry<JsonNode>> entries) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return root ? Result.ALL : Result.NONE;
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createCreateArray(List<? extends Expression<JsonNode>> items) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return analyzeOperands(items, root);
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createJsonLiteral(String json) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    return Result.NONE;
+                }
+            };
+        }
+
+        @Override
+        public Node<JsonNode> createSequence(List<Node<JsonNode>> nodes) {
+            return new Scope(runtime) {
+                @Override
+                Result analyze(boolean root) {
+                    Result result = new Result(Collections.emptySet(), root);
+                    for (Node<JsonNode> node : nodes) {
+                        Result nodeResult = RootFieldAnalyzer.analyze(node, result.root);
+                        result = result.union(nodeResult, nodeResult.root);
+                    }
+                    return result;
+                }
+            };
+        }
+    }
+
+    private static final class Reference extends Scope {
+
+        private Reference(@Nonnull Adapter<JsonNode> runtime) {
+            super(runtime);
+        }
+
+        @Override
+        Result analyze(boolean root) {
+            return Result.NONE;
+        }
+    }
+}
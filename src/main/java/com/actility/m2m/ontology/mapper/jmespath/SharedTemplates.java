@@ -0,0 +1,113 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The templates of an operation deduplicated by their text, so that a template used by several points, such as
+ * {@code {{time}}} as event time, is evaluated once per message. Plain property paths are resolved together by a
+ * {@link PropertyPathTrie}, the other expressions are evaluated on first use and their result is shared.
+ * <p>
+ * Templates are added while an operation is compiled; the table is only read afterwards. A shared expression is
+ * reported to the {@link ExpressionProfiler} under the first point that added it. The property paths are profiled
+ * together, see {@link ExpressionProfiler#searchAll}.
+ */
+public final class SharedTemplates {
+
+    @Nonnull
+    private final PropertyPathTrie paths = new PropertyPathTrie();
+    @Nonnull
+    private final Map<String, Integer> slots = new HashMap<>();
+    @Nonnull
+    private final List<JmesPathTemplate> templates = new ArrayList<>();
+    /**
+     * Slot of each template in the {@link PropertyPathTrie}, {@code -1} for the other expressions.
+     */
+    @Nonnull
+    private final List<Integer> pathSlots = new ArrayList<>();
+    /**
+     * Profiler statistics of each {@link PropertyPathTrie} slot.
+     */
+    @Nonnull
+    private ExpressionStats[] pathStats = new ExpressionStats[0];
+
+    /**
+     * @return the slot of the template in the values returned by {@link #evaluate(JsonNode)}, {@code -1} when the
+     * template is not an expression
+     */
+    public int add(@Nullable JmesPathTemplate template) {
+        if (template == null || !template.isExpression()) {
+            return -1;
+        }
+        Integer slot = slots.get(template.getTemplate());
+        if (slot == null) {
+            slot = templates.size();
+            slots.put(template.getTemplate(), slot);
+            templates.add(template);
+            int pathSlot = paths.add(template);
+            pathSlots.add(pathSlot);
+            if (pathSlot == pathStats.length) {
+                pathStats = Arrays.copyOf(pathStats, pathSlot + 1);
+                pathStats[pathSlot] = template.stats();
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * @return the number of distinct templates
+     */
+    public int size() {
+        return templates.size();
+    }
+
+    /**
+     * Resolves the property paths of the message; the other expressions are evaluated when first read.
+     */
+    @Nonnull
+    public Values evaluate(@Nonnull JsonNode message) {
+        return new Values(message, JmesPathUtil.getExpressionProfiler().searchAll(pathStats, paths::evaluate, message));
+    }
+
+    /**
+     * The values of the templates for one message. Not thread-safe.
+     */
+    public final class Values {
+        @Nonnull
+        private final JsonNode message;
+        @Nonnull
+        private final JsonNode[] pathValues;
+        @Nonnull
+        private final JsonNode[] results = new JsonNode[templates.size()];
+        @Nonnull
+        private final boolean[] evaluated = new boolean[templates.size()];
+
+        private Values(@Nonnull JsonNode message, @Nonnull JsonNode[] pathValues) {
+            this.message = message;
+            this.pathValues = pathValues;
+        }
+
+        /**
+         * @return the value of the template in the slot, as {@link JmesPathTemplate#retrieveValues(JsonNode)}
+         */
+        @Nullable
+        public JsonNode get(int slot) {
+            int pathSlot = pathSlots.get(slot);
+            if (pathSlot >= 0) {
+                return pathValues[pathSlot];
+            }
+            if (!evaluated[slot]) {
+                results[slot] = templates.get(slot).retrieveValues(message);
+                evaluated[slot] = true;
+            }
+            return results[slot];
+        }
+    }
+}
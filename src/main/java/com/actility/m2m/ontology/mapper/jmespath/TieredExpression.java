@@ -0,0 +1,67 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An expression interpreted until it has been evaluated {@code threshold} times, then compiled again by a runtime
+ * built on the {@link CompilingNodeFactory}. The count is not synchronized, so a hot expression may be evaluated
+ * slightly more than {@code threshold} times before switching, and a few threads may compile it concurrently; the
+ * resulting expressions are equivalent.
+ */
+final class TieredExpression implements Expression<JsonNode> {
+
+    @Nonnull
+    private final Expression<JsonNode> interpreted;
+    @Nonnull
+    private final String expression;
+    @Nonnull
+    private final JmesPath<JsonNode> compiler;
+    private final int threshold;
+    private int invocations;
+    @Nullable
+    private volatile Expression<JsonNode> compiled;
+
+    TieredExpression(
+            @Nonnull Expression<JsonNode> interpreted,
+            @Nonnull String expression,
+            @Nonnull JmesPath<JsonNode> compiler,
+            int threshold) {
+        this.interpreted = interpreted;
+        this.expression = expression;
+        this.compiler = compiler;
+        this.threshold = threshold;
+    }
+
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    @Override
+    public JsonNode search(JsonNode input) {
+        Expression<JsonNode> current = compiled;
+        if (current != null) {
+            return current.search(input);
+        }
+        if (++invocations >= threshold) {
+            compiled = compile();
+        }
+        return interpreted.search(input);
+    }
+
+    /**
+     * @return the compiled expression, the interpreted one when it does not compile
+     */
+    @Nonnull
+    private Expression<JsonNode> compile() {
+        try {
+            return compiler.compile(expression);
+        } catch (RuntimeException e) {
+            return interpreted;
+        }
+    }
+}
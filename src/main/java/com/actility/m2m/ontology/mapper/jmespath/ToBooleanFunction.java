@@ -16,12 +16,11 @@ public class ToBooleanFunction extends BaseFunction {
 
     @Override
     protected <T> T callFunction(Adapter<T> runtime, List<FunctionArgument<T>> arguments) {
-        boolean result = false;
         T value = arguments.get(0).value();
-        if ((int) runtime.toNumber(value) == 1) {
-            result = true;
-        }
+        return runtime.createBoolean(isTrue(runtime.toNumber(value)));
+    }
 
-        return runtime.createBoolean(result);
+    static boolean isTrue(Number value) {
+        return (int) value == 1;
     }
 }
@@ -0,0 +1,47 @@
+package com.actility.m2m.ontology.mapper.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution in nanoseconds. Recording goes through an HdrHistogram {@link Recorder}: it is wait-free and
+ * does not allocate. Readers fold the recorded interval into a cumulative histogram.
+ */
+public final class LatencyHistogram {
+
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    @Nonnull
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    @Nonnull
+    private final LongAdder sumNanos = new LongAdder();
+    @Nonnull
+    private final Histogram cumulative = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    @Nullable
+    private Histogram interval;
+
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(Math.max(nanos, 0L), HIGHEST_TRACKABLE_NANOS));
+        sumNanos.add(nanos);
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * @return a copy of everything recorded so far
+     */
+    @Nonnull
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        cumulative.add(interval);
+        return cumulative.copy();
+    }
+}
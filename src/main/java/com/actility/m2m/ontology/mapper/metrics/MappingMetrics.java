@@ -0,0 +1,163 @@
+package com.actility.m2m.ontology.mapper.metrics;
+
+import com.actility.m2m.flow.data.Point;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MessageExtractionException;
+import com.actility.m2m.ontology.mapper.PointExtractionException;
+import org.HdrHistogram.Histogram;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mapping metrics of the process: latency per operation type and per route, dropped messages, produced points and
+ * records, extraction failures. Recording is lock-free and does not allocate once an operation type or route has
+ * been seen; {@link #writePrometheus(StringBuilder)} renders everything in the Prometheus text format.
+ */
+@Singleton
+public class MappingMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    @Nonnull
+    private final Map<Class<?>, OperationMetrics> operations = new ConcurrentHashMap<>();
+    @Nonnull
+    private final Map<String, LatencyHistogram> routes = new ConcurrentHashMap<>();
+    @Nonnull
+    private final LongAdder pointsProduced = new LongAdder();
+    @Nonnull
+    private final LongAdder recordsProduced = new LongAdder();
+    @Nonnull
+    private final LongAdder pointExtractionFailures = new LongAdder();
+    @Nonnull
+    private final LongAdder messageExtractionFailures = new LongAdder();
+
+    @Inject
+    public MappingMetrics() {
+    }
+
+    @Nonnull
+    public OperationMetrics operation(@Nonnull Class<?> operationType) {
+        return operations.computeIfAbsent(operationType, OperationMetrics::new);
+    }
+
+    @Nonnull
+    public LatencyHistogram route(@Nonnull String route) {
+        return routes.computeIfAbsent(route, name -> new LatencyHistogram());
+    }
+
+    /**
+     * Counts the points and records of a mapped uplink.
+     */
+    public void recordProduced(@Nullable UpMessage message) {
+        if (message == null || message.points == null) {
+            return;
+        }
+        pointsProduced.add(message.points.size());
+        for (Point point : message.points.values()) {
+            if (point.records != null) {
+                recordsProduced.add(point.records.size());
+            }
+        }
+    }
+
+    public void recordFailure(@Nonnull Throwable error) {
+        if (error instanceof PointExtractionException) {
+            pointExtractionFailures.increment();
+        } else if (error instanceof MessageExtractionException) {
+            messageExtractionFailures.increment();
+        }
+    }
+
+    public long getPointsProduced() {
+        return pointsProduced.sum();
+    }
+
+    public long getRecordsProduced() {
+        return recordsProduced.sum();
+    }
+
+    public long getPointExtractionFailures() {
+        return pointExtractionFailures.sum();
+    }
+
+    public long getMessageExtractionFailures() {
+        return messageExtractionFailures.sum();
+    }
+
+    public void writePrometheus(@Nonnull StringBuilder out) {
+        List<OperationMetrics> operationMetrics = new ArrayList<>(operations.values());
+        operationMetrics.sort(Comparator.comparing(OperationMetrics::getOperation));
+
+        header(out, "ontology_mapping_operation_latency_seconds", "summary", "Latency of each mapping operation");
+        for (OperationMetrics metrics : operationMetrics) {
+            summary(out, "ontology_mapping_operation_latency_seconds", "operation", metrics.getOperation(),
+                    metrics.getLatency());
+        }
+        header(out, "ontology_mapping_route_latency_seconds", "summary", "Latency of each mapping route");
+        List<String> routeNames = new ArrayList<>(routes.keySet());
+        routeNames.sort(Comparator.naturalOrder());
+        for (String route : routeNames) {
+            summary(out, "ontology_mapping_route_latency_seconds", "route", route, routes.get(route));
+        }
+        header(out, "ontology_mapping_messages_dropped_total", "counter", "Messages dropped by an operation");
+        for (OperationMetrics metrics : operationMetrics) {
+            sample(out, "ontology_mapping_messages_dropped_total", "operation", metrics.getOperation(),
+                    metrics.getDropped());
+        }
+        header(out, "ontology_mapping_points_produced_total", "counter", "Points of the mapped uplinks");
+        sample(out, "ontology_mapping_points_produced_total", null, null, pointsProduced.sum());
+        header(out, "ontology_mapping_records_produced_total", "counter", "Records of the mapped uplinks");
+        sample(out, "ontology_mapping_records_produced_total", null, null, recordsProduced.sum());
+        header(out, "ontology_mapping_failures_total", "counter", "Mappings failed by an extraction error");
+        sample(out, "ontology_mapping_failures_total", "exception", PointExtractionException.class.getSimpleName(),
+                pointExtractionFailures.sum());
+        sample(out, "ontology_mapping_failures_total", "exception", MessageExtractionException.class.getSimpleName(),
+                messageExtractionFailures.sum());
+    }
+
+    private static void header(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String type, @Nonnull String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(
+            @Nonnull StringBuilder out,
+            @Nonnull String name,
+            @Nullable String label,
+            @Nullable String labelValue,
+            long value) {
+        out.append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(labelValue).append("\"}");
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void summary(
+            @Nonnull StringBuilder out,
+            @Nonnull String name,
+            @Nonnull String label,
+            @Nonnull String labelValue,
+            @Nonnull LatencyHistogram latency) {
+        Histogram histogram = latency.snapshot();
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(label).append("=\"").append(labelValue)
+                    .append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND).append('\n');
+        }
+        out.append(name).append("_sum{").append(label).append("=\"").append(labelValue).append("\"} ")
+                .append(latency.getSumNanos() / NANOS_PER_SECOND).append('\n');
+        out.append(name).append("_count{").append(label).append("=\"").append(labelValue).append("\"} ")
+                .append(histogram.getTotalCount()).append('\n');
+    }
+}
@@ -0,0 +1,46 @@
+package com.actility.m2m.ontology.mapper.metrics;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and dropped messages of one operation type.
+ */
+public final class OperationMetrics {
+
+    @Nonnull
+    private final String operation;
+    @Nonnull
+    private final LatencyHistogram latency = new LatencyHistogram();
+    @Nonnull
+    private final LongAdder dropped = new LongAdder();
+
+    OperationMetrics(@Nonnull Class<?> operationType) {
+        this.operation = operationType.getSimpleName();
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} before the operation was applied
+     * @param dropped    whether the operation dropped the message
+     */
+    public void record(long startNanos, boolean dropped) {
+        latency.record(System.nanoTime() - startNanos);
+        if (dropped) {
+            this.dropped.increment();
+        }
+    }
+
+    @Nonnull
+    public String getOperation() {
+        return operation;
+    }
+
+    @Nonnull
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,165 @@
+package com.actility.m2m.ontology.mapper.operations;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the entry of a command id among the {@code commands} of a downlink operation. When several entries
+ * match, the first one in declaration order wins; when none does, the {@code default} entry is returned.
+ */
+abstract class CommandRouter<T> {
+
+    @Nonnull
+    static final String DEFAULT_COMMAND = "default";
+    /**
+     * Bound on the number of nodes of the substring trie. Each node costs a hash map, so the trie stays within a
+     * few megabytes; this covers the command lists of real profiles, which hold short names.
+     */
+    static final int MAXIMUM_TRIE_SIZE = 1 << 14;
+
+    @Nullable
+    private final T defaultEntry;
+
+    private CommandRouter(@Nonnull Map<String, T> commands) {
+        this.defaultEntry = commands.get(DEFAULT_COMMAND);
+    }
+
+    /**
+     * Matches the entries whose name equals the command id, ignoring case like {@link String#equalsIgnoreCase}.
+     */
+    @Nonnull
+    static <T> CommandRouter<T> equalsIgnoreCase(@Nonnull Map<String, T> commands) {
+        return new IgnoreCaseRouter<>(commands);
+    }
+
+    /**
+     * Matches the entries whose name contains the command id.
+     */
+    @Nonnull
+    static <T> CommandRouter<T> contains(@Nonnull Map<String, T> commands) {
+        return new SubstringRouter<>(commands);
+    }
+
+    /**
+     * @return the matching entry, else the {@code default} entry, else {@code null}
+     */
+    @Nullable
+    T route(@Nonnull String commandId) {
+        T entry = find(commandId);
+        return entry != null ? entry : defaultEntry;
+    }
+
+    @Nullable
+    T getDefault() {
+        return defaultEntry;
+    }
+
+    @Nullable
+    abstract T find(@Nonnull String commandId);
+
+    /**
+     * Hash index on the names folded the way {@link String#equalsIgnoreCase} compares characters.
+     */
+    private static final class IgnoreCaseRouter<T> extends CommandRouter<T> {
+        @Nonnull
+        private final Map<String, T> index = new HashMap<>();
+
+        private IgnoreCaseRouter(@Nonnull Map<String, T> commands) {
+            super(commands);
+            for (Map.Entry<String, T> entry : commands.entrySet()) {
+                index.putIfAbsent(fold(entry.getKey()), entry.getValue());
+            }
+        }
+
+        @Override
+        @Nullable
+        T find(@Nonnull String commandId) {
+            return index.get(fold(commandId));
+        }
+
+        @Nonnull
+        private static String fold(@Nonnull String name) {
+            char[] folded = new char[name.length()];
+            for (int i = 0; i < folded.length; i++) {
+                folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+            }
+            return new String(folded);
+        }
+    }
+
+    /**
+     * Trie of every suffix of every name: walking a command id from the root reaches the node of that substring,
+     * which holds the first entry containing it. Once the trie would grow too large, the remaining names are
+     * scanned; they all come after the names of the trie.
+     */
+    private static final class SubstringRouter<T> extends CommandRouter<T> {
+        @Nonnull
+        private final Node<T> root = new Node<>();
+        @Nonnull
+        private final List<Map.Entry<String, T>> scanned = new ArrayList<>();
+
+        private SubstringRouter(@Nonnull Map<String, T> commands) {
+            super(commands);
+            int order = 0;
+            long trieSize = 0;
+            for (Map.Entry<String, T> entry : commands.entrySet()) {
+                int length = entry.getKey().length();
+                trieSize += (long) length * (length + 1) / 2;
+                if (trieSize <= MAXIMUM_TRIE_SIZE) {
+                    add(entry.getKey(), order, entry.getValue());
+                } else {
+                    scanned.add(entry);
+                }
+                order++;
+            }
+        }
+
+        private void add(@Nonnull String name, int order, @Nonnull T value) {
+            root.mark(order, value);
+            for (int start = 0; start < name.length(); start++) {
+                Node<T> node = root;
+                for (int i = start; i < name.length(); i++) {
+                    node = node.children.computeIfAbsent(name.charAt(i), c -> new Node<>());
+                    node.mark(order, value);
+                }
+            }
+        }
+
+        @Override
+        @Nullable
+        T find(@Nonnull String commandId) {
+            Node<T> node = root;
+            for (int i = 0; i < commandId.length() && node != null; i++) {
+                node = node.children.get(commandId.charAt(i));
+            }
+            if (node != null && node.value != null) {
+                return node.value;
+            }
+            for (Map.Entry<String, T> entry : scanned) {
+                if (entry.getKey().contains(commandId)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+
+        private static final class Node<T> {
+            @Nonnull
+            private final Map<Character, Node<T>> children = new HashMap<>();
+            private int order = Integer.MAX_VALUE;
+            @Nullable
+            private T value;
+
+            private void mark(int order, @Nonnull T value) {
+                if (order < this.order) {
+                    this.order = order;
+                    this.value = value;
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.actility.m2m.ontology.mapper.operations;
 
-import com.actility.m2m.commons.service.mapper.JsonMapper;
-import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.*;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapper.jmespath.*;
 import com.actility.m2m.ontology.mapping.java.lib.data.*;
@@ -13,7 +14,9 @@ import java.util.*;
 
 public class DownExtractDriverMessageOperation implements OperationHandler {
 
-    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+    @Nonnull
+    private final CompiledOperationCache<DownOperation, DownMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileDownOperation);
 
     @Override
     public Optional<UpMessage> applyUpOperation(@Nonnull UpMessage message, @Nonnull UpOperation upOperation) {
@@ -22,25 +25,46 @@ public class DownExtractDriverMessageOperation implements OperationHandler {
     @Override
     @Nonnull
     public Optional<DownMessage> applyDownOperation(@Nonnull DownMessage message, @Nonnull DownOperation downOperation) {
-        JsonNode messageJson = jsonMapper.toJsonNode(message);
-        Command command = message.command;
-        JsonNode resultJson = null;
+        return applyDownOperation(MessageContext.of(message), downOperation);
+    }
+    @Override
+    @Nonnull
+    public Optional<DownMessage> applyDownOperation(@Nonnull MessageContext<DownMessage> context, @Nonnull DownOperation downOperation) {
+        return compiledOperations.get(downOperation).apply(context);
+    }
+    @Override
+    @Nonnull
+    public CompiledOperation<DownMessage> compileDownOperation(@Nonnull DownOperation downOperation) {
         DownExtractDriverMessage jmesPathOperation = (DownExtractDriverMessage) downOperation;
-        for (Map.Entry<String, JsonNode> entry : jmesPathOperation.commands.entrySet()){
-            if(command!=null && entry.getKey().contains(command.id)){
-                resultJson = JmesPathUtil.extractMessage(messageJson, entry.getValue());
-                break;
-            }
+        Map<String, JsonTemplate> commands = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonNode> entry : jmesPathOperation.commands.entrySet()) {
+            commands.put(entry.getKey(), JsonTemplate.compileMessage(entry.getValue()));
         }
-        if(resultJson==null){
-            if(jmesPathOperation.commands.containsKey("default")){
-                resultJson = JmesPathUtil.extractMessage(messageJson, jmesPathOperation.commands.get("default"));
-            }
+        return new CompiledExtractDriverMessage(CommandRouter.contains(commands));
+    }
+
+    private static final class CompiledExtractDriverMessage implements CompiledOperation<DownMessage> {
+
+        @Nonnull
+        private final CommandRouter<JsonTemplate> commands;
+
+        private CompiledExtractDriverMessage(@Nonnull CommandRouter<JsonTemplate> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        @Nonnull
+        public Optional<DownMessage> apply(@Nonnull MessageContext<DownMessage> context) {
+            DownMessage message = context.getMessage();
+            JsonNode messageJson = context.getMessageJson();
+            Command command = message.command;
+            JsonTemplate template = command != null ? commands.route(command.id) : commands.getDefault();
+            JsonNode resultJson = template != null ? template.render(messageJson) : null;
+            return Optional.of(DownMessage.newDownMessageBuilder(message)
+                    .packet(MessagePacket.newMessagePacketBuilder()
+                            .message((ObjectNode) resultJson)
+                            .build())
+                    .build());
         }
-        return Optional.of(DownMessage.newDownMessageBuilder(message)
-                .packet(MessagePacket.newMessagePacketBuilder()
-                        .message(jsonMapper.fromJson(resultJson, ObjectNode.class))
-                        .build())
-                .build());
     }
-}
\ No newline at end of file
+}
@@ -1,54 +1,95 @@
 package com.actility.m2m.ontology.mapper.operations;
 
-import com.actility.m2m.commons.service.mapper.JsonMapper;
-import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.*;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapper.jmespath.*;
 import com.actility.m2m.ontology.mapping.java.lib.data.*;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.*;
 
 public class DownUpdateCommandOperation implements OperationHandler {
 
-    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+    @Nonnull
+    private final CompiledOperationCache<DownOperation, DownMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileDownOperation);
 
     @Override
     public Optional<UpMessage> applyUpOperation(UpMessage message, UpOperation upOperation) {
         return Optional.empty();
     }
     @Override
-    public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation downOperation) {
-        Command command = message.command;
-        String id=null;
-        JsonNode input=null;
+    @Nonnull
+    public Optional<DownMessage> applyDownOperation(@Nonnull DownMessage message, @Nonnull DownOperation downOperation) {
+        return applyDownOperation(MessageContext.of(message), downOperation);
+    }
+    @Override
+    @Nonnull
+    public Optional<DownMessage> applyDownOperation(@Nonnull MessageContext<DownMessage> context, @Nonnull DownOperation downOperation) {
+        return compiledOperations.get(downOperation).apply(context);
+    }
+    @Override
+    @Nonnull
+    public CompiledOperation<DownMessage> compileDownOperation(@Nonnull DownOperation downOperation) {
         DownUpdateCommand jmesPathOperation = (DownUpdateCommand) downOperation;
-        for (Map.Entry<String, UpdateCommand> entry : jmesPathOperation.commands.entrySet()){
-            if(command == null){
-                break;
+        Map<String, CompiledCommand> commands = new LinkedHashMap<>();
+        for (Map.Entry<String, UpdateCommand> entry : jmesPathOperation.commands.entrySet()) {
+            commands.put(entry.getKey(), new CompiledCommand(entry.getValue()));
+        }
+        return new CompiledUpdateCommand(CommandRouter.equalsIgnoreCase(commands));
+    }
+
+    private static final class CompiledUpdateCommand implements CompiledOperation<DownMessage> {
+
+        @Nonnull
+        private final CommandRouter<CompiledCommand> commands;
+
+        private CompiledUpdateCommand(@Nonnull CommandRouter<CompiledCommand> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        @Nonnull
+        public Optional<DownMessage> apply(@Nonnull MessageContext<DownMessage> context) {
+            DownMessage message = context.getMessage();
+            Command command = message.command;
+            if (command == null) {
+                return Optional.of(DownMessage.newDownMessageBuilder(message).command(null).build());
             }
-            if(command.id.equalsIgnoreCase(entry.getKey())){
-                if(entry.getValue().id!=null){
-                    id = entry.getValue().id;
-                }
-                if(entry.getValue().input!=null){
-                    input = JmesPathUtil.extractCommands(jsonMapper.toJsonNode(command),entry.getValue().input);
-                }
-                return Optional.of(DownMessage.newDownMessageBuilder(message).
-                        command(Command.newCommandBuilder().id(id!=null? id : command.id).input(input!=null?input:command.input).build()).build());
+            CompiledCommand compiledCommand = commands.route(command.id);
+            if (compiledCommand != null) {
+                return Optional.of(compiledCommand.update(context, command));
             }
+            return Optional.of(DownMessage.newDownMessageBuilder(message).command(command).build());
         }
-        if(command!=null && jmesPathOperation.commands.containsKey("default")){
-            id = jmesPathOperation.commands.get("default").id;
+    }
 
-            if(jmesPathOperation.commands.get("default").input!=null){
-                input = JmesPathUtil.extractCommands(jsonMapper.toJsonNode(command), jmesPathOperation.commands.get("default").input);
-            }
-            return Optional.of(DownMessage.newDownMessageBuilder(message).
-                    command(Command.newCommandBuilder().id(id!=null? id : command.id).input(input!=null?input:command.input).build()).build());
+    private static final class CompiledCommand {
+
+        @Nullable
+        private final String id;
+        @Nullable
+        private final JsonTemplate input;
+
+        private CompiledCommand(@Nonnull UpdateCommand command) {
+            this.id = command.id;
+            this.input = command.input == null ? null : JsonTemplate.compileCommands(command.input);
+        }
+
+        @Nonnull
+        private DownMessage update(@Nonnull MessageContext<DownMessage> context, @Nonnull Command command) {
+            JsonNode newInput = input == null ? null : input.render(context.getMessageJson().get("command"));
+            return DownMessage.newDownMessageBuilder(context.getMessage())
+                    .command(Command.newCommandBuilder()
+                            .id(id != null ? id : command.id)
+                            .input(newInput != null ? newInput : command.input)
+                            .build())
+                    .build();
         }
-        return Optional.of(DownMessage.newDownMessageBuilder(message).
-                    command(command).build());
     }
 }
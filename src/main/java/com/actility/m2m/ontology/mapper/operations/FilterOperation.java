@@ -1,61 +1,121 @@
 package com.actility.m2m.ontology.mapper.operations;
 
-import com.actility.m2m.commons.service.mapper.JsonMapper;
-import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.DownMessage;
 import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.flow.data.UpMessageType;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.google.common.collect.ImmutableSet;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public class FilterOperation implements OperationHandler {
 
-    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+    @Nonnull
+    private final CompiledOperationCache<UpOperation, UpMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileUpOperation);
 
     @Override
+    @Nonnull
     public Optional<UpMessage> applyUpOperation(@Nonnull UpMessage message, @Nonnull UpOperation upOperation) {
+        return applyUpOperation(MessageContext.of(message), upOperation);
+    }
+
+    @Override
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull MessageContext<UpMessage> context, @Nonnull UpOperation upOperation) {
+        return compiledOperations.get(upOperation).apply(context);
+    }
 
+    /**
+     * Resolves the kept message types into enum sets, so that filtering a message is a set lookup on its type and,
+     * for notifications, a hash lookup on its subtype.
+     */
+    @Override
+    @Nonnull
+    public CompiledOperation<UpMessage> compileUpOperation(@Nonnull UpOperation upOperation) {
         UpFilterOperation upFilterOperation = (UpFilterOperation) upOperation;
-        if (isFilterPresent(upFilterOperation.keepDeviceDownlinkSent, message.type.getValue(), "deviceDownlinkSent")) {
-            return Optional.of(message);
-        }
-        if (isFilterPresent(upFilterOperation.keepDeviceUplink, message.type.getValue(), "deviceUplink")) {
-            return Optional.of(message);
-        }
-        if (isFilterPresent(upFilterOperation.keepDeviceLocation, message.type.getValue(), "deviceLocation")) {
-            return Optional.of(message);
+        EnumSet<UpMessageType> keptTypes = EnumSet.noneOf(UpMessageType.class);
+        EnumSet<UpMessageType> notificationTypes = EnumSet.noneOf(UpMessageType.class);
+        for (UpMessageType type : UpMessageType.values()) {
+            if (isFilterPresent(upFilterOperation.keepDeviceDownlinkSent, type.getValue(), "deviceDownlinkSent")
+                    || isFilterPresent(upFilterOperation.keepDeviceUplink, type.getValue(), "deviceUplink")
+                    || isFilterPresent(upFilterOperation.keepDeviceLocation, type.getValue(), "deviceLocation")) {
+                keptTypes.add(type);
+            } else if (isFilterPresent(upFilterOperation.keepDeviceNotification, type.getValue(), "deviceNotification")) {
+                notificationTypes.add(type);
+            }
         }
-        if (isFilterPresent(upFilterOperation.keepDeviceNotification, message.type.getValue(), "deviceNotification")
-                && isSubtypePresent(upFilterOperation.keepDeviceNotificationSubTypes, message.subType)) {
-            return Optional.of(message);
-        }
-
-        return Optional.empty();
+        List<String> subTypes = upFilterOperation.keepDeviceNotificationSubTypes;
+        return new CompiledFilter(keptTypes, notificationTypes, subTypes == null ? null : new HashSet<>(subTypes));
     }
 
     public boolean isFilterPresent(Boolean filterVal, String type, String typeString) {
         return filterVal != null && filterVal && type.equalsIgnoreCase(typeString);
     }
 
-    public boolean isSubtypePresent(List<String> subTypes, String subType) {
-        if (subTypes == null) {
-            return true;
-        }
-        if (subTypes.isEmpty() && subType == null) {
-            return true;
-        }
-        if (subType != null && subTypes.contains(subType)) {
-            return true;
-        }
-        return false;
-    }
     @Override
     public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation upOperation) {
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+    private static final class CompiledFilter implements CompiledOperation<UpMessage> {
+
+        @Nonnull
+        private static final Set<String> ROOT_FIELDS = ImmutableSet.of("type", "subType");
+
+        @Nonnull
+        private final Set<UpMessageType> keptTypes;
+        @Nonnull
+        private final Set<UpMessageType> notificationTypes;
+        /**
+         * Kept notification subtypes, {@code null} to keep them all.
+         */
+        @Nullable
+        private final Set<String> subTypes;
+
+        private CompiledFilter(
+                @Nonnull Set<UpMessageType> keptTypes,
+                @Nonnull Set<UpMessageType> notificationTypes,
+                @Nullable Set<String> subTypes) {
+            this.keptTypes = keptTypes;
+            this.notificationTypes = notificationTypes;
+            this.subTypes = subTypes;
+        }
+
+        @Override
+        @Nonnull
+        public Set<String> rootFields() {
+            return ROOT_FIELDS;
+        }
+
+        @Override
+        @Nonnull
+        public Optional<UpMessage> apply(@Nonnull MessageContext<UpMessage> context) {
+            UpMessage message = context.getMessage();
+            if (keptTypes.contains(message.type)
+                    || notificationTypes.contains(message.type) && isSubtypeKept(message.subType)) {
+                return Optional.of(message);
+            }
+            return Optional.empty();
+        }
+
+        private boolean isSubtypeKept(@Nullable String subType) {
+            if (subTypes == null) {
+                return true;
+            }
+            return subType == null ? subTypes.isEmpty() : subTypes.contains(subType);
+        }
+    }
+}
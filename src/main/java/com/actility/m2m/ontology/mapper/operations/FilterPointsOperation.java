@@ -3,35 +3,97 @@ package com.actility.m2m.ontology.mapper.operations;
 import com.actility.m2m.flow.data.DownMessage;
 import com.actility.m2m.flow.data.Point;
 import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapping.java.lib.data.*;
+import com.google.common.collect.Maps;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.*;
 
 public class FilterPointsOperation implements OperationHandler {
 
+    @Nonnull
+    private final CompiledOperationCache<UpOperation, UpMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileUpOperation);
+
+    @Override
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull UpMessage message, @Nonnull UpOperation upOperation) {
+        return applyUpOperation(MessageContext.of(message), upOperation);
+    }
+
     @Override
-    public Optional<UpMessage> applyUpOperation(UpMessage message, UpOperation upOperation) {
-        List<String> points;
-        UpFilterPointsOperation upFilterPointsOperation = (UpFilterPointsOperation) upOperation;
-        Map<String, Point> pointsUpMessage = message.points;
-        if(pointsUpMessage!=null){
-            points = upFilterPointsOperation.points;
-            Map<String, Point> newPoints = new HashMap<>();
-            if(!points.isEmpty()){
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull MessageContext<UpMessage> context, @Nonnull UpOperation upOperation) {
+        return compiledOperations.get(upOperation).apply(context);
+    }
+
+    /**
+     * Hashes the kept point names, so that filtering a message costs one lookup per point of the smaller side.
+     */
+    @Override
+    @Nonnull
+    public CompiledOperation<UpMessage> compileUpOperation(@Nonnull UpOperation upOperation) {
+        List<String> points = ((UpFilterPointsOperation) upOperation).points;
+        return new CompiledFilterPoints(points == null ? null : new HashSet<>(points));
+    }
+
+    @Override
+    public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation upOperation) {
+        return Optional.empty();
+    }
+
+    private static final class CompiledFilterPoints implements CompiledOperation<UpMessage> {
+
+        @Nullable
+        private final Set<String> keptPoints;
+
+        private CompiledFilterPoints(@Nullable Set<String> keptPoints) {
+            this.keptPoints = keptPoints;
+        }
+
+        @Override
+        @Nonnull
+        public Set<String> rootFields() {
+            return Collections.singleton("points");
+        }
+
+        /**
+         * @return the message itself when it has no points or when every point is kept
+         */
+        @Override
+        @Nonnull
+        public Optional<UpMessage> apply(@Nonnull MessageContext<UpMessage> context) {
+            UpMessage message = context.getMessage();
+            Map<String, Point> pointsUpMessage = message.points;
+            if (pointsUpMessage == null) {
+                return Optional.of(message);
+            }
+            Map<String, Point> newPoints;
+            if (keptPoints.size() < pointsUpMessage.size()) {
+                newPoints = Maps.newHashMapWithExpectedSize(keptPoints.size());
+                for (String name : keptPoints) {
+                    Point point = pointsUpMessage.get(name);
+                    if (point != null) {
+                        newPoints.put(name, point);
+                    }
+                }
+            } else {
+                newPoints = Maps.newHashMapWithExpectedSize(pointsUpMessage.size());
                 for (Map.Entry<String, Point> entry : pointsUpMessage.entrySet()) {
-                    if(points.contains(entry.getKey())){
+                    if (keptPoints.contains(entry.getKey())) {
                         newPoints.put(entry.getKey(), entry.getValue());
                     }
                 }
+                if (newPoints.size() == pointsUpMessage.size()) {
+                    return Optional.of(message);
+                }
             }
             return Optional.of(UpMessage.newUpMessageBuilder(message).points(newPoints).build());
         }
-        return Optional.of(message);
-    }
-
-    @Override
-    public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation upOperation) {
-        return Optional.empty();
     }
 }
@@ -4,10 +4,15 @@ import com.actility.m2m.commons.service.mapper.JsonMapper;
 import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.*;
 import com.actility.m2m.flow.data.Record;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapper.PointExtractionException;
+import com.actility.m2m.ontology.mapper.jmespath.JmesPathTemplate;
 import com.actility.m2m.ontology.mapper.jmespath.JmesPathUtil;
 import com.actility.m2m.ontology.mapper.jmespath.PointParams;
+import com.actility.m2m.ontology.mapper.jmespath.SharedTemplates;
 import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPoint;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpExtractPoints;
@@ -15,50 +20,224 @@ import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.*;
 
 public class UpExtractPointsOperation implements OperationHandler {
 
     private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
 
+    @Nonnull
+    private final CompiledOperationCache<UpOperation, UpMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileUpOperation);
+
     @Override
     @Nonnull
     public Optional<UpMessage> applyUpOperation(@Nonnull UpMessage message, @Nonnull UpOperation upOperation) {
-        Map<String, Point> newPoints =
-                new HashMap<>(Optional.ofNullable(message.points).orElse(Collections.emptyMap()));
+        return applyUpOperation(MessageContext.of(message), upOperation);
+    }
+
+    @Override
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull MessageContext<UpMessage> context, @Nonnull UpOperation upOperation) {
+        return compiledOperations.get(upOperation).apply(context);
+    }
+
+    @Override
+    @Nonnull
+    public CompiledOperation<UpMessage> compileUpOperation(@Nonnull UpOperation upOperation) {
         UpExtractPoints jmesPathOperation = (UpExtractPoints) upOperation;
-        JsonNode messageJson = jsonMapper.toJsonNode(message);
+        List<CompiledPoint> points = new ArrayList<>(jmesPathOperation.points.size());
+        SharedTemplates templates = new SharedTemplates();
         for (Map.Entry<String, JmesPathPoint> entry : jmesPathOperation.points.entrySet()) {
+            points.add(new CompiledPoint(entry.getKey(), entry.getValue(), templates));
+        }
+        return new CompiledExtractPoints(points, templates, rootFields(points));
+    }
+
+    /**
+     * @return whether the templates of the points may read {@code points}, that is points extracted by earlier
+     * operations
+     */
+    public static boolean readsPoints(@Nonnull UpExtractPoints operation) {
+        if (operation.points == null) {
+            return false;
+        }
+        List<CompiledPoint> points = new ArrayList<>(operation.points.size());
+        SharedTemplates templates = new SharedTemplates();
+        for (Map.Entry<String, JmesPathPoint> entry : operation.points.entrySet()) {
+            points.add(new CompiledPoint(entry.getKey(), entry.getValue(), templates));
+        }
+        Set<String> fields = rootFields(points);
+        return fields == null || fields.contains("points");
+    }
+
+    /**
+     * @return the top-level message fields read by the templates of the points, {@code null} when one of them may
+     * read the whole message
+     */
+    @Nullable
+    private static Set<String> rootFields(@Nonnull List<CompiledPoint> points) {
+        Set<String> fields = new HashSet<>();
+        for (CompiledPoint point : points) {
+            for (JmesPathTemplate template : point.templates()) {
+                Set<String> templateFields = template.rootFields();
+                if (templateFields == null) {
+                    return null;
+                }
+                fields.addAll(templateFields);
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation upOperation) {
+        return Optional.empty();
+    }
+
+    /**
+     * The points of an operation. Templates shared by several points are evaluated once per message, and those that
+     * are plain property paths are resolved together by one walk over the message. They only see the top-level
+     * fields the templates read.
+     */
+    private static final class CompiledExtractPoints implements CompiledOperation<UpMessage> {
+
+        @Nonnull
+        private final List<CompiledPoint> points;
+        @Nonnull
+        private final SharedTemplates templates;
+        @Nullable
+        private final Set<String> rootFields;
+
+        private CompiledExtractPoints(
+                @Nonnull List<CompiledPoint> points,
+                @Nonnull SharedTemplates templates,
+                @Nullable Set<String> rootFields) {
+            this.points = points;
+            this.templates = templates;
+            this.rootFields = rootFields;
+        }
+
+        @Override
+        @Nullable
+        public Set<String> rootFields() {
+            if (rootFields == null) {
+                return null;
+            }
+            Set<String> fields = new HashSet<>(rootFields);
+            fields.add("points");
+            return fields;
+        }
+
+        @Override
+        @Nonnull
+        public Optional<UpMessage> apply(@Nonnull MessageContext<UpMessage> context) {
+            UpMessage message = context.getMessage();
+            Map<String, Point> newPoints =
+                    new HashMap<>(Optional.ofNullable(message.points).orElse(Collections.emptyMap()));
+            JsonNode messageJson = context.getMessageJson(rootFields);
+            SharedTemplates.Values values = templates.evaluate(messageJson);
+            for (CompiledPoint point : points) {
+                point.extract(messageJson, values).ifPresent(extractedPoint -> newPoints.put(point.name, extractedPoint));
+            }
+            return Optional.of(UpMessage.newUpMessageBuilder(message).points(newPoints).build());
+        }
+    }
+
+    private static final class CompiledPoint {
+
+        @Nonnull
+        private final String name;
+        @Nullable
+        private final JmesPathTemplate value;
+        @Nullable
+        private final JmesPathTemplate eventTime;
+        @Nullable
+        private final JmesPathTemplate[] coordinates;
+        private final int valueSlot;
+        private final int eventTimeSlot;
+        @Nullable
+        private final int[] coordinateSlots;
+        @Nullable
+        private final String ontologyId;
+        @Nullable
+        private final String unitId;
+        @Nullable
+        private final PointType type;
+
+        private CompiledPoint(@Nonnull String name, @Nonnull JmesPathPoint point, @Nonnull SharedTemplates templates) {
+            this.name = name;
+            this.value = JmesPathTemplate.compile(point.value, name);
+            this.eventTime = JmesPathTemplate.compile(point.eventTime, name);
+            if (point.coordinates != null) {
+                String[] getCoordinates = jsonMapper.fromJson(point.coordinates, String[].class);
+                if (getCoordinates.length != 2 && getCoordinates.length != 3) {
+                    throw new PointExtractionException("invalid 'coordinate' length, it must be 2 or 3", name);
+                }
+                this.coordinates = new JmesPathTemplate[getCoordinates.length];
+                this.coordinateSlots = new int[getCoordinates.length];
+                for (int i = 0; i < getCoordinates.length; i++) {
+                    this.coordinates[i] = JmesPathTemplate.compile(getCoordinates[i], name);
+                    this.coordinateSlots[i] = templates.add(coordinates[i]);
+                }
+            } else {
+                this.coordinates = null;
+                this.coordinateSlots = null;
+            }
+            this.valueSlot = templates.add(value);
+            this.eventTimeSlot = templates.add(eventTime);
+            this.ontologyId = point.ontologyId;
+            this.unitId = point.unitId;
+            this.type = Optional.ofNullable(point.type)
+                    .map(pointType -> PointType.fromValue(pointType.getValue()))
+                    .orElse(null);
+        }
+
+        @Nonnull
+        private List<JmesPathTemplate> templates() {
+            List<JmesPathTemplate> templates = new ArrayList<>(2 + (coordinates == null ? 0 : coordinates.length));
+            if (value != null) {
+                templates.add(value);
+            }
+            if (eventTime != null) {
+                templates.add(eventTime);
+            }
+            if (coordinates != null) {
+                for (JmesPathTemplate coordinate : coordinates) {
+                    if (coordinate != null) {
+                        templates.add(coordinate);
+                    }
+                }
+            }
+            return templates;
+        }
+
+        @Nonnull
+        private Optional<Point> extract(@Nonnull JsonNode messageJson, @Nonnull SharedTemplates.Values sharedValues) {
             JsonNode values = null;
             boolean isValue = false;
-            if (entry.getValue().value != null) {
-                values = JmesPathUtil.retrieveValues(messageJson, entry.getValue().value);
+            if (value != null) {
+                values = retrieveValues(messageJson, sharedValues, value, valueSlot);
                 isValue = true;
             }
-            JsonNode eventTime = JmesPathUtil.retrieveValues(messageJson, entry.getValue().eventTime);
+            JsonNode eventTimes = retrieveValues(messageJson, sharedValues, eventTime, eventTimeSlot);
             JsonNode longitude = null;
             JsonNode latitude = null;
             JsonNode altitude = null;
             boolean isAltitude = false;
             boolean isCoordinate = false;
-            if (entry.getValue().coordinates != null) {
-                List<String> getCoordinates = Arrays.asList(jsonMapper.fromJson(entry.getValue().coordinates, String[].class));
+            if (coordinates != null) {
                 isCoordinate = true;
-                if (getCoordinates.size() == 2) {
-                    longitude = JmesPathUtil.retrieveValues(messageJson, getCoordinates.get(0));
-                    latitude = JmesPathUtil.retrieveValues(messageJson, getCoordinates.get(1));
-
-                } else if (getCoordinates.size() == 3) {
-                    longitude = JmesPathUtil.retrieveValues(messageJson, getCoordinates.get(0));
-                    latitude = JmesPathUtil.retrieveValues(messageJson, getCoordinates.get(1));
-                    altitude = JmesPathUtil.retrieveValues(messageJson, getCoordinates.get(2));
+                longitude = retrieveValues(messageJson, sharedValues, coordinates[0], coordinateSlots[0]);
+                latitude = retrieveValues(messageJson, sharedValues, coordinates[1], coordinateSlots[1]);
+                if (coordinates.length == 3) {
+                    altitude = retrieveValues(messageJson, sharedValues, coordinates[2], coordinateSlots[2]);
                     isAltitude = true;
-                } else {
-                    throw new PointExtractionException("invalid 'coordinate' length, it must be 2 or 3", entry.getKey());
                 }
             }
             PointParams params = PointParams.newPointParamsBuilder()
-                    .eventTime(eventTime)
+                    .eventTime(eventTimes)
                     .values(values)
                     .longitude(longitude)
                     .latitude(latitude)
@@ -67,24 +246,22 @@ public class UpExtractPointsOperation implements OperationHandler {
                     .isCoordinate(isCoordinate)
                     .isValue(isValue)
                     .build();
-            Optional<List<Record>> records = JmesPathUtil.extractRecords(params, entry.getKey());
-            records.ifPresent(recordList -> newPoints.put(
-                    entry.getKey(),
-                    Point.newPointBuilder()
-                            .ontologyId(Optional.ofNullable(entry.getValue().ontologyId).orElse(null))
-                            .unitId(Optional.ofNullable(entry.getValue().unitId).orElse(null))
-                            .type(
-                                    Optional.ofNullable(entry.getValue().type)
-                                            .map(type -> PointType.fromValue(type.getValue()))
-                                            .orElse(null))
-                            .records(recordList)
-                            .build()));
+            Optional<List<Record>> records = JmesPathUtil.extractRecords(params, name);
+            return records.map(recordList -> Point.newPointBuilder()
+                    .ontologyId(ontologyId)
+                    .unitId(unitId)
+                    .type(type)
+                    .records(recordList)
+                    .build());
         }
-        return Optional.of(UpMessage.newUpMessageBuilder(message).points(newPoints).build());
-    }
 
-    @Override
-    public Optional<DownMessage> applyDownOperation(DownMessage message, DownOperation upOperation) {
-        return Optional.empty();
+        @Nullable
+        private static JsonNode retrieveValues(
+                @Nonnull JsonNode messageJson,
+                @Nonnull SharedTemplates.Values sharedValues,
+                @Nullable JmesPathTemplate template,
+                int slot) {
+            return slot >= 0 ? sharedValues.get(slot) : JmesPathTemplate.retrieveValues(messageJson, template);
+        }
     }
 }
@@ -4,117 +4,57 @@ import com.actility.m2m.commons.service.mapper.JsonMapper;
 import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.*;
 import com.actility.m2m.flow.data.Record;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.CompiledOperationCache;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.OperationHandler;
 import com.actility.m2m.ontology.mapper.PointExtractionException;
-import com.actility.m2m.ontology.mapper.jmespath.JmesPathUtil;
-import com.actility.m2m.ontology.mapper.jmespath.PointParams;
+import com.actility.m2m.ontology.mapper.jmespath.EventTimeParser;
+import com.actility.m2m.ontology.mapper.jmespath.JmesPathTemplate;
 import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpdatePoint;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpUpdatePoints;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.google.common.base.Suppliers;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class UpUpdatePointsOperation implements OperationHandler {
 
     private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
 
+    @Nonnull
+    private final CompiledOperationCache<UpOperation, UpMessage> compiledOperations =
+            new CompiledOperationCache<>(this::compileUpOperation);
+
     @Override
-    public Optional<UpMessage> applyUpOperation(UpMessage message, UpOperation upOperation) {
-        Map<String, Point> existingPoints =
-                new HashMap<>(Optional.ofNullable(message.points).orElse(Collections.emptyMap()));
-        Map<String, Point> newPoints = new HashMap<>();
-        UpUpdatePoints jmesPathOperation = (UpUpdatePoints) upOperation;
-        for (Map.Entry<String, Point> entry : existingPoints.entrySet()) {
-            Map<String, UpdatePoint> jmesPathPoints = jmesPathOperation.points;
-            if (jmesPathPoints.containsKey(entry.getKey())) {
-                boolean isValue = false;
-                boolean isAltitude = false;
-                boolean isCoordinate = false;
-                List<Record> records = entry.getValue().records;
-                List<JsonNode> value = new ArrayList<>();
-                List<JsonNode> latitudes = new ArrayList<>();
-                List<JsonNode> longitudes = new ArrayList<>();
-                List<JsonNode> altitudes = new ArrayList<>();
-                List<JsonNode> eventTimes = new ArrayList<>();
-                for (Record record : records) {
-                    if (record.value != null) {
-                        value.add(getValue(record.value, jmesPathPoints.get(entry.getKey()).value));
-                        isValue = true;
-                    }
-                    eventTimes.add(getEventTime(jsonMapper.toJsonNode(record.eventTime), jmesPathPoints.get(entry.getKey()).eventTime));
-                    if (record.coordinates != null && !record.coordinates.isEmpty()) {
-                        isCoordinate = true;
-                        if (jmesPathPoints.get(entry.getKey()).coordinates != null) {
-                            List<String> getCoordinates = Arrays.asList(jsonMapper.fromJson(jmesPathPoints.get(entry.getKey()).coordinates, String[].class));
-                            if (getCoordinates.size() == 2) {
-                                longitudes.add(JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(record.coordinates.get(0)), getCoordinates.get(0)));
-                                latitudes.add(JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(record.coordinates.get(1)), getCoordinates.get(1)));
-                            } else if (getCoordinates.size() == 3) {
-                                longitudes.add(JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(record.coordinates.get(0)), getCoordinates.get(0)));
-                                latitudes.add(JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(record.coordinates.get(1)), getCoordinates.get(1)));
-                                altitudes.add(JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(record.coordinates.get(2)), getCoordinates.get(2)));
-                                isAltitude = true;
-                            } else {
-                                throw new PointExtractionException("invalid 'coordinate' length, it must be 2 or 3", entry.getKey());
-                            }
-                        } else {
-                            longitudes.add(jsonMapper.toJsonNode(record.coordinates.get(0)));
-                            latitudes.add(jsonMapper.toJsonNode(record.coordinates.get(1)));
-                            if (record.coordinates.size() == 3) {
-                                altitudes.add(jsonMapper.toJsonNode(record.coordinates.get(2)));
-                                isAltitude = true;
-                            }
-                        }
-                    }
-                }
-                PointParams params = PointParams.newPointParamsBuilder()
-                        .eventTime(jsonMapper.toJsonNode(eventTimes))
-                        .values(jsonMapper.toJsonNode(value))
-                        .longitude(jsonMapper.toJsonNode(longitudes))
-                        .latitude(jsonMapper.toJsonNode(latitudes))
-                        .altitude(jsonMapper.toJsonNode(altitudes))
-                        .isAltitude(isAltitude)
-                        .isCoordinate(isCoordinate)
-                        .isValue(isValue)
-                        .build();
-                Optional<List<Record>> newRecords = JmesPathUtil.extractRecords(params, entry.getKey());
-                newRecords.ifPresent(recordList -> newPoints.put(
-                        entry.getKey(),
-                        Point.newPointBuilder()
-                                .ontologyId(Optional.ofNullable(jmesPathPoints.get(entry.getKey()).ontologyId).orElse(entry.getValue().ontologyId))
-                                .unitId(Optional.ofNullable(jmesPathPoints.get(entry.getKey()).unitId).orElse(entry.getValue().unitId))
-                                .type(
-                                        Optional.ofNullable(jmesPathPoints.get(entry.getKey()).type)
-                                                .map(type -> PointType.fromValue(type.getValue()))
-                                                .orElse(entry.getValue().type))
-                                .records(recordList)
-                                .build()));
-            }else{
-                newPoints.put(entry.getKey(), entry.getValue());
-            }
-        }
-        return Optional.of(UpMessage.newUpMessageBuilder(message).points(newPoints).build());
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull UpMessage message, @Nonnull UpOperation upOperation) {
+        return applyUpOperation(MessageContext.of(message), upOperation);
     }
 
-    private JsonNode getValue(JsonNode recordVal, String jmesPathValue){
-        if (jmesPathValue != null && jmesPathValue.contains("{{") && jmesPathValue.contains("}}")) {
-            return JmesPathUtil.retrieveValues(jsonMapper.toJsonNode(recordVal), jmesPathValue);
-        } else if (jmesPathValue != null) {
-            return jsonMapper.toJsonNode(jmesPathValue);
-        } else {
-            return jsonMapper.toJsonNode(recordVal);
-        }
+    @Override
+    @Nonnull
+    public Optional<UpMessage> applyUpOperation(@Nonnull MessageContext<UpMessage> context, @Nonnull UpOperation upOperation) {
+        return compiledOperations.get(upOperation).apply(context);
     }
-    private JsonNode getEventTime(JsonNode recordTime, String jmesPathEventTime){
-        if (jmesPathEventTime != null && jmesPathEventTime.contains("{{") && jmesPathEventTime.contains("}}")) {
-            return JmesPathUtil.retrieveValues(recordTime, jmesPathEventTime);
-        } else if (jmesPathEventTime != null) {
-            return jsonMapper.toJsonNode(Objects.requireNonNull(jmesPathEventTime));
-        } else {
-            return recordTime;
+
+    @Override
+    @Nonnull
+    public CompiledOperation<UpMessage> compileUpOperation(@Nonnull UpOperation upOperation) {
+        UpUpdatePoints jmesPathOperation = (UpUpdatePoints) upOperation;
+        Map<String, CompiledUpdatePoint> points = new HashMap<>();
+        for (Map.Entry<String, UpdatePoint> entry : jmesPathOperation.points.entrySet()) {
+            points.put(entry.getKey(), new CompiledUpdatePoint(entry.getKey(), entry.getValue()));
         }
+        return new CompiledUpdatePoints(points);
     }
 
     @Override
@@ -122,5 +62,212 @@ public class UpUpdatePointsOperation implements OperationHandler {
         return Optional.empty();
     }
 
+    private static final class CompiledUpdatePoints implements CompiledOperation<UpMessage> {
+
+        @Nonnull
+        private final Map<String, CompiledUpdatePoint> points;
+
+        private CompiledUpdatePoints(@Nonnull Map<String, CompiledUpdatePoint> points) {
+            this.points = points;
+        }
+
+        @Override
+        @Nonnull
+        public Set<String> rootFields() {
+            return Collections.singleton("points");
+        }
+
+        @Override
+        @Nonnull
+        public Optional<UpMessage> apply(@Nonnull MessageContext<UpMessage> context) {
+            UpMessage message = context.getMessage();
+            Map<String, Point> existingPoints = Optional.ofNullable(message.points).orElse(Collections.emptyMap());
+            Map<String, Point> newPoints = new HashMap<>();
+            for (Map.Entry<String, Point> entry : existingPoints.entrySet()) {
+                CompiledUpdatePoint point = points.get(entry.getKey());
+                if (point != null) {
+                    point.update(entry.getValue()).ifPresent(updatedPoint -> newPoints.put(entry.getKey(), updatedPoint));
+                } else {
+                    newPoints.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return Optional.of(UpMessage.newUpMessageBuilder(message).points(newPoints).build());
+        }
+    }
+
+    /**
+     * An {@link UpdatePoint} with its templates classified once: {@code null} keeps the record field, an expression
+     * is evaluated against the record field, anything else is a JSON constant parsed on first use.
+     */
+    private static final class CompiledUpdatePoint {
+
+        @Nonnull
+        private final String name;
+        @Nullable
+        private final JmesPathTemplate value;
+        @Nullable
+        private final Supplier<JsonNode> constantValue;
+        @Nullable
+        private final JmesPathTemplate eventTime;
+        @Nullable
+        private final Supplier<JsonNode> constantEventTime;
+        @Nullable
+        private final JmesPathTemplate[] coordinates;
+        @Nullable
+        private final String ontologyId;
+        @Nullable
+        private final String unitId;
+        @Nullable
+        private final PointType type;
+
+        private CompiledUpdatePoint(@Nonnull String name, @Nonnull UpdatePoint point) {
+            this.name = name;
+            this.value = expression(point.value, name);
+            this.constantValue = value == null ? constant(point.value) : null;
+            this.eventTime = expression(point.eventTime, name);
+            this.constantEventTime = eventTime == null ? constant(point.eventTime) : null;
+            if (point.coordinates != null) {
+                String[] getCoordinates = jsonMapper.fromJson(point.coordinates, String[].class);
+                this.coordinates = new JmesPathTemplate[getCoordinates.length];
+                for (int i = 0; i < getCoordinates.length; i++) {
+                    this.coordinates[i] = JmesPathTemplate.compile(getCoordinates[i], name);
+                }
+            } else {
+                this.coordinates = null;
+            }
+            this.ontologyId = point.ontologyId;
+            this.unitId = point.unitId;
+            this.type = Optional.ofNullable(point.type)
+                    .map(pointType -> PointType.fromValue(pointType.getValue()))
+                    .orElse(null);
+        }
+
+        @Nullable
+        private static JmesPathTemplate expression(@Nullable String template, @Nonnull String name) {
+            JmesPathTemplate compiled = JmesPathTemplate.compile(template, name);
+            return compiled != null && compiled.isExpression() ? compiled : null;
+        }
+
+        @Nullable
+        private static Supplier<JsonNode> constant(@Nullable String template) {
+            return template == null ? null : Suppliers.memoize(() -> jsonMapper.toJsonNode(template));
+        }
+
+        /**
+         * Checks the cardinalities on the input records, then maps each record to its updated record.
+         *
+         * @return the updated point, empty when its records hold neither values nor coordinates
+         */
+        @Nonnull
+        private Optional<Point> update(@Nonnull Point point) {
+            List<Record> records = point.records;
+            int valueCount = 0;
+            int coordinateCount = 0;
+            int altitudeCount = 0;
+            for (Record record : records) {
+                if (record.value != null) {
+                    valueCount++;
+                }
+                if (record.coordinates != null && !record.coordinates.isEmpty()) {
+                    if (coordinates != null && coordinates.length != 2 && coordinates.length != 3) {
+                        throw new PointExtractionException("invalid 'coordinate' length, it must be 2 or 3", name);
+                    }
+                    coordinateCount++;
+                    if (coordinates != null ? coordinates.length == 3 : record.coordinates.size() == 3) {
+                        altitudeCount++;
+                    }
+                }
+            }
+            checkCardinality(records.size(), valueCount, coordinateCount, altitudeCount);
+            if (valueCount == 0 && coordinateCount == 0) {
+                return Optional.empty();
+            }
+            boolean hasAltitude = altitudeCount != 0;
+            List<Record> newRecords = new ArrayList<>(records.size());
+            for (Record record : records) {
+                Record.Builder newRecord = Record.newRecordBuilder().eventTime(updateEventTime(record.eventTime));
+                if (valueCount != 0) {
+                    newRecord.value(updateValue(record.value));
+                }
+                if (coordinateCount != 0) {
+                    newRecord.coordinates(updateCoordinates(record.coordinates, hasAltitude));
+                }
+                newRecords.add(newRecord.build());
+            }
+            return Optional.of(Point.newPointBuilder()
+                    .ontologyId(Optional.ofNullable(ontologyId).orElse(point.ontologyId))
+                    .unitId(Optional.ofNullable(unitId).orElse(point.unitId))
+                    .type(Optional.ofNullable(type).orElse(point.type))
+                    .records(newRecords)
+                    .build());
+        }
 
+        private void checkCardinality(int eventTimeCount, int valueCount, int coordinateCount, int altitudeCount) {
+            boolean isValue = valueCount != 0;
+            boolean isCoordinate = coordinateCount != 0;
+            if (isValue && valueCount != eventTimeCount) {
+                throw new PointExtractionException("there is a mismatch in cardinality for 'value' and 'eventTime'", name);
+            }
+            if (isCoordinate) {
+                if (coordinateCount != eventTimeCount) {
+                    throw new PointExtractionException(
+                            "there is a mismatch in cardinality between 'coordinates' and 'eventTime' fields", name);
+                } else if (altitudeCount != 0 && coordinateCount != altitudeCount) {
+                    throw new PointExtractionException(
+                            "there is a mismatch in cardinality between 'latitude' and 'longitude' and 'altitude' fields", name);
+                }
+            }
+            if (isValue && isCoordinate && valueCount != coordinateCount) {
+                throw new PointExtractionException("there is a mismatch in cardinality for 'value' and 'coordinates'", name);
+            }
+        }
+
+        @Nonnull
+        private OffsetDateTime updateEventTime(@Nullable OffsetDateTime recordTime) {
+            if (eventTime != null) {
+                return EventTimeParser.parse(orNull(eventTime.retrieveValues(jsonMapper.toJsonNode(recordTime))));
+            } else if (constantEventTime != null) {
+                return EventTimeParser.parse(constantEventTime.get());
+            } else if (recordTime != null) {
+                return recordTime;
+            } else {
+                return EventTimeParser.parse(NullNode.getInstance());
+            }
+        }
+
+        @Nonnull
+        private JsonNode updateValue(@Nonnull JsonNode recordValue) {
+            if (value != null) {
+                return orNull(value.retrieveValues(recordValue));
+            } else if (constantValue != null) {
+                return constantValue.get();
+            } else {
+                return recordValue;
+            }
+        }
+
+        @Nonnull
+        private List<Double> updateCoordinates(@Nonnull List<Double> recordCoordinates, boolean hasAltitude) {
+            double longitude = updateCoordinate(recordCoordinates, 0);
+            double latitude = updateCoordinate(recordCoordinates, 1);
+            return hasAltitude
+                    ? Arrays.asList(longitude, latitude, updateCoordinate(recordCoordinates, 2))
+                    : Arrays.asList(longitude, latitude);
+        }
+
+        private double updateCoordinate(@Nonnull List<Double> recordCoordinates, int index) {
+            Double coordinate = recordCoordinates.get(index);
+            if (coordinates == null) {
+                return coordinate == null ? 0.0 : coordinate;
+            }
+            JsonNode result = JmesPathTemplate.retrieveValues(
+                    coordinate == null ? NullNode.getInstance() : DoubleNode.valueOf(coordinate), coordinates[index]);
+            return orNull(result).asDouble();
+        }
+
+        @Nonnull
+        private static JsonNode orNull(@Nullable JsonNode node) {
+            return node == null ? NullNode.getInstance() : node;
+        }
+    }
 }
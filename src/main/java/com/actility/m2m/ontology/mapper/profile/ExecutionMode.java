@@ -0,0 +1,13 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+/**
+ * Where the mapping stage of a request runs.
+ */
+public enum ExecutionMode {
+    /** Inline on the Vert.x event loop that received the request. Cheapest for small payloads. */
+    EVENT_LOOP,
+    /** On the bounded mapping worker pool. */
+    WORKER,
+    /** On a virtual thread, when the runtime provides them, otherwise on the worker pool. */
+    VIRTUAL
+}
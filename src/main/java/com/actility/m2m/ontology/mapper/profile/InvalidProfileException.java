@@ -0,0 +1,20 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+/**
+ * A profile that cannot be registered: its id is not valid, or its operations do not compile.
+ */
+public class InvalidProfileException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+    public final String profileId;
+
+    public InvalidProfileException(String profileId, String message) {
+        super("invalid mapping profile '" + profileId + "': " + message);
+        this.profileId = profileId;
+    }
+
+    public InvalidProfileException(String profileId, Throwable cause) {
+        super("invalid mapping profile '" + profileId + "': " + cause.getMessage(), cause);
+        this.profileId = profileId;
+    }
+}
@@ -0,0 +1,54 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A named set of uplink and downlink operations registered once and referenced by its id in apply requests.
+ * The version is assigned by the {@link ProfileRegistry} and incremented on every update. A profile known to carry
+ * heavy or light payloads may set the {@link ExecutionMode} of its messages, which otherwise follows their payload
+ * size class.
+ */
+public final class MappingProfile {
+
+    @Nonnull
+    @JsonProperty("id")
+    public final String id;
+
+    @JsonProperty("version")
+    public final long version;
+
+    @Nonnull
+    @JsonProperty("operations")
+    public final List<UpOperation> operations;
+
+    @Nonnull
+    @JsonProperty("operationsDown")
+    public final List<DownOperation> operationsDown;
+
+    @Nullable
+    @JsonProperty("executionMode")
+    public final ExecutionMode executionMode;
+
+    @JsonCreator
+    public MappingProfile(
+            @Nonnull @JsonProperty("id") String id,
+            @JsonProperty("version") long version,
+            @Nullable @JsonProperty("operations") List<UpOperation> operations,
+            @Nullable @JsonProperty("operationsDown") List<DownOperation> operationsDown,
+            @Nullable @JsonProperty("executionMode") ExecutionMode executionMode) {
+        this.id = id;
+        this.version = version;
+        this.operations = operations == null ? Collections.emptyList() : Collections.unmodifiableList(operations);
+        this.operationsDown =
+                operationsDown == null ? Collections.emptyList() : Collections.unmodifiableList(operationsDown);
+        this.executionMode = executionMode;
+    }
+}
@@ -0,0 +1,12 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+public class ProfileNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    public final String profileId;
+
+    public ProfileNotFoundException(String profileId) {
+        super("mapping profile '" + profileId + "' does not exist");
+        this.profileId = profileId;
+    }
+}
@@ -0,0 +1,244 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.jmespath.ExpressionProfiler;
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the registered {@link MappingProfile}s together with their compiled plans. Lookups are lock-free, updates
+ * are serialized. When a directory is given, every profile is stored there as {@code <id>.json} and the directory
+ * is loaded back on creation.
+ */
+public class ProfileRegistry {
+    @Nonnull
+    private static final Logger LOG = LoggerFactory.getLogger(ProfileRegistry.class);
+    @Nonnull
+    private static final Pattern PROFILE_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,127}");
+    @Nonnull
+    private static final String EXTENSION = ".json";
+    @Nonnull
+    private static final ObjectReader profileReader =
+            ObjectMapperModule.createObjectMapper().readerFor(MappingProfile.class);
+    @Nonnull
+    private static final ObjectWriter profileWriter =
+            ObjectMapperModule.createObjectMapper().writerFor(MappingProfile.class);
+
+    @Nonnull
+    private final OperationService operationService;
+    @Nullable
+    private final Path directory;
+    @Nonnull
+    private final Map<String, Entry> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory where profiles are persisted, {@code null} to keep them in memory only
+     */
+    public ProfileRegistry(@Nonnull OperationService operationService, @Nullable Path directory) {
+        this.operationService = operationService;
+        this.directory = directory;
+        if (directory != null) {
+            load(directory);
+        }
+    }
+
+    /**
+     * Registers or replaces a profile. The operations are compiled before anything is stored, so an invalid profile
+     * leaves the previous version in place. Compiles and writes the profile file: do not call from an event loop.
+     *
+     * @return the stored profile with its new version
+     * @throws InvalidProfileException when the id is not valid or the operations do not compile
+     */
+    @Nonnull
+    public MappingProfile put(
+            @Nonnull String id,
+            @Nullable List<UpOperation> operations,
+            @Nullable List<DownOperation> operationsDown) {
+        return put(id, operations, operationsDown, null);
+    }
+
+    /**
+     * @param executionMode the mode of the messages of the profile, {@code null} for the mode of their size class
+     * @see #put(String, List, List)
+     */
+    @Nonnull
+    public synchronized MappingProfile put(
+            @Nonnull String id,
+            @Nullable List<UpOperation> operations,
+            @Nullable List<DownOperation> operationsDown,
+            @Nullable ExecutionMode executionMode) {
+        checkId(id);
+        Entry previous = profiles.get(id);
+        MappingProfile profile = new MappingProfile(
+                id, previous == null ? 1L : previous.profile.version + 1, operations, operationsDown, executionMode);
+        Entry entry;
+        try {
+            entry = compile(profile);
+        } catch (RuntimeException e) {
+            throw new InvalidProfileException(id, e);
+        }
+        if (directory != null) {
+            write(directory, profile);
+        }
+        profiles.put(id, entry);
+        return profile;
+    }
+
+    /**
+     * Removes the profile file before the profile itself, so a failed deletion leaves the profile registered. Deletes
+     * the profile file: do not call from an event loop.
+     *
+     * @return whether a profile was removed
+     */
+    public synchronized boolean delete(@Nonnull String id) {
+        checkId(id);
+        if (!profiles.containsKey(id)) {
+            return false;
+        }
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory.resolve(id + EXTENSION));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        profiles.remove(id);
+        return true;
+    }
+
+    @Nonnull
+    public Optional<MappingProfile> get(@Nonnull String id) {
+        return Optional.ofNullable(profiles.get(id)).map(entry -> entry.profile);
+    }
+
+    @Nonnull
+    public List<MappingProfile> list() {
+        List<MappingProfile> result = new ArrayList<>(profiles.size());
+        for (Entry entry : profiles.values()) {
+            result.add(entry.profile);
+        }
+        result.sort(Comparator.comparing(profile -> profile.id));
+        return result;
+    }
+
+    /**
+     * @throws ProfileNotFoundException when no profile is registered under this id
+     */
+    @Nonnull
+    public MappingPlan<UpMessage> getUpPlan(@Nonnull String id) {
+        return getEntry(id).upPlan;
+    }
+
+    /**
+     * @throws ProfileNotFoundException when no profile is registered under this id
+     */
+    @Nonnull
+    public MappingPlan<DownMessage> getDownPlan(@Nonnull String id) {
+        return getEntry(id).downPlan;
+    }
+
+    @Nonnull
+    private Entry getEntry(@Nonnull String id) {
+        Entry entry = profiles.get(id);
+        if (entry == null) {
+            throw new ProfileNotFoundException(id);
+        }
+        return entry;
+    }
+
+    @Nonnull
+    private Entry compile(@Nonnull MappingProfile profile) {
+        return ExpressionProfiler.compilingProfile(profile.id, () -> new Entry(
+                profile,
+                operationService.compileUpOperations(profile.operations),
+                operationService.compileDownOperations(profile.operationsDown)));
+    }
+
+    private static void checkId(@Nonnull String id) {
+        if (!PROFILE_ID.matcher(id).matches()) {
+            throw new InvalidProfileException(id, "the id must match " + PROFILE_ID.pattern());
+        }
+    }
+
+    private void load(@Nonnull Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+                for (Path file : files) {
+                    try {
+                        MappingProfile profile = profileReader.readValue(file.toFile());
+                        checkId(profile.id);
+                        profiles.put(profile.id, compile(profile));
+                    } catch (IOException | RuntimeException e) {
+                        LOG.warn("Ignoring mapping profile file {}", file, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOG.info("Loaded {} mapping profiles from {}", profiles.size(), directory);
+    }
+
+    private static void write(@Nonnull Path directory, @Nonnull MappingProfile profile) {
+        Path target = directory.resolve(profile.id + EXTENSION);
+        try {
+            Path temporary = Files.createTempFile(directory, profile.id, ".tmp");
+            try {
+                profileWriter.writeValue(temporary.toFile(), profile);
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Entry {
+        @Nonnull
+        private final MappingProfile profile;
+        @Nonnull
+        private final MappingPlan<UpMessage> upPlan;
+        @Nonnull
+        private final MappingPlan<DownMessage> downPlan;
+
+        private Entry(
+                @Nonnull MappingProfile profile,
+                @Nonnull MappingPlan<UpMessage> upPlan,
+                @Nonnull MappingPlan<DownMessage> downPlan) {
+            this.profile = profile;
+            this.upPlan = upPlan;
+            this.downPlan = downPlan;
+        }
+    }
+}
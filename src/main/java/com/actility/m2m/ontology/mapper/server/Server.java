@@ -5,7 +5,11 @@ import com.actility.m2m.commons.http.server.controller.SwaggerController;
 import com.actility.m2m.commons.http.server.handler.ServerErrorHandler;
 import com.actility.m2m.commons.service.Application;
 import com.actility.m2m.ontology.mapper.server.component.DaggerServerComponent;
+import com.actility.m2m.ontology.mapper.server.controller.AdminController;
+import com.actility.m2m.ontology.mapper.server.controller.BatchOperationController;
+import com.actility.m2m.ontology.mapper.server.controller.MetricsController;
 import com.actility.m2m.ontology.mapper.server.controller.OperationController;
+import com.actility.m2m.ontology.mapper.server.controller.ProfileController;
 import com.google.common.util.concurrent.ServiceManager;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
@@ -32,6 +36,10 @@ public class Server extends Application {
             @Nonnull HttpServer httpServer,
             @Nonnull SwaggerController swaggerController,
             @Nonnull OperationController mapperController,
+            @Nonnull BatchOperationController batchController,
+            @Nonnull ProfileController profileController,
+            @Nonnull MetricsController metricsController,
+            @Nonnull AdminController adminController,
             @Nonnull ServerErrorHandler serverErrorHandler) {
         super(serviceManager);
 
@@ -41,6 +49,10 @@ public class Server extends Application {
                 createOpenAPI3RouterFactory(vertx, "swagger.yaml.vm", serverErrorHandler).blockingGet();
 
         mapperController.register(routerFactory);
+        batchController.register(routerFactory);
+        profileController.register(routerFactory);
+        metricsController.register(routerFactory);
+        adminController.register(routerFactory);
         Router subRouter = routerFactory.getRouter();
         swaggerController.register(subRouter);
         this.httpServer.mountSubRouter("/", subRouter);
@@ -5,6 +5,8 @@ import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.commons.service.module.ServiceManagerModule;
 import com.actility.m2m.commons.vertx.module.VertxStandaloneModule;
 import com.actility.m2m.ontology.mapper.server.Server;
+import com.actility.m2m.ontology.mapper.server.module.MappingExecutorModule;
+import com.actility.m2m.ontology.mapper.server.module.ProfileRegistryModule;
 import com.actility.m2m.ontology.mapper.server.module.SwaggerControllerModule;
 import dagger.Component;
 
@@ -16,6 +18,8 @@ import javax.inject.Singleton;
                 VertxStandaloneModule.class,
                 HttpServerModule.class,
                 SwaggerControllerModule.class,
+                MappingExecutorModule.class,
+                ProfileRegistryModule.class,
                 ObjectMapperModule.class,
                 ServiceManagerModule.class
         })
@@ -0,0 +1,40 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.commons.http.server.CommonsRoutingContext;
+import com.actility.m2m.commons.http.server.controller.OpenAPI3Controller;
+import com.actility.m2m.commons.service.mapper.JsonMapper;
+import com.actility.m2m.ontology.mapper.jmespath.JmesPathUtil;
+import com.google.common.net.MediaType;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+
+/**
+ * Operator endpoints reporting on the mapping internals.
+ */
+public class AdminController implements OpenAPI3Controller {
+    private static final int DEFAULT_LIMIT = 10;
+    @Nonnull
+    private final JsonMapper jsonMapper;
+
+    @Inject
+    public AdminController(@Nonnull JsonMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public void register(OpenAPI3RouterFactory router) {
+        router.addHandlerByOperationId("getTopExpressions", this::handleGetTopExpressions);
+    }
+
+    private void handleGetTopExpressions(@Nonnull RoutingContext routingContext) {
+        String limit = routingContext.request().getParam("limit");
+        CommonsRoutingContext.wrap(routingContext)
+                .response()
+                .setContentType(MediaType.JSON_UTF_8)
+                .end(jsonMapper.toJson(JmesPathUtil.getExpressionProfiler()
+                        .top(limit == null ? DEFAULT_LIMIT : Integer.parseInt(limit))));
+    }
+}
@@ -0,0 +1,346 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.commons.http.server.CommonsRoutingContext;
+import com.actility.m2m.commons.http.server.controller.OpenAPI3Controller;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.UpMessageReader;
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpApplyBatchOperations;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies one operation list to a batch of uplinks. The body is split and the operations compiled on the worker
+ * pool. Each message is then decoded and mapped by the {@link MappingExecutor}, in the mode of its size class and a
+ * bounded number at a time, and the results are streamed back as NDJSON, either in input order or in completion
+ * order.
+ * <p>
+ * Both body formats are only split into byte ranges up front: every message is decoded once, from its own bytes, by
+ * the {@link UpMessageReader} of the plan, so it gets the same content projection as the profile endpoints.
+ */
+public class BatchOperationController implements OpenAPI3Controller {
+    @Nonnull
+    private static final Logger LOG = LoggerFactory.getLogger(BatchOperationController.class);
+    @Nonnull
+    private static final String NDJSON = "application/x-ndjson";
+    @Nonnull
+    private static final ObjectMapper objectMapper = ObjectMapperModule.createObjectMapper();
+    @Nonnull
+    private static final ObjectReader batchOperationsReader = objectMapper.readerFor(UpApplyBatchOperations.class);
+    @Nonnull
+    private static final ObjectReader operationsReader =
+            objectMapper.readerFor(new TypeReference<List<UpOperation>>() { });
+    @Nonnull
+    private static final ObjectWriter batchItemWriter = objectMapper.writerFor(UpApplyBatchItem.class);
+    /**
+     * Messages of one batch mapped or waiting for their line to be written, enough to keep the worker pool busy.
+     */
+    private static final int MAXIMUM_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+    @Nonnull
+    private final OperationService operationService;
+    @Nonnull
+    private final MappingExecutor mappingExecutor;
+
+    @Inject
+    public BatchOperationController(
+            @Nonnull OperationService operationService,
+            @Nonnull MappingExecutor mappingExecutor) {
+        this.operationService = operationService;
+        this.mappingExecutor = mappingExecutor;
+    }
+
+    @Override
+    public void register(OpenAPI3RouterFactory router) {
+        router.addHandlerByOperationId("applyOperationsBatch", this::handleApplyOperationsBatch);
+    }
+
+    private void handleApplyOperationsBatch(@Nonnull RoutingContext routingContext) {
+        CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
+        String contentType = routingContext.request().getHeader(HttpHeaders.CONTENT_TYPE);
+        boolean ndjson = contentType != null && contentType.startsWith(NDJSON);
+        boolean inputOrder = !"completion".equals(routingContext.request().getParam("order"));
+
+        commonsRoutingContext
+                .readBody()
+                .flatMap(buffer -> mappingExecutor.execute(ExecutionMode.WORKER, () -> {
+                    byte[] body = buffer.getBytes();
+                    return ndjson ? decodeNdjson(body) : decodeJson(body);
+                }))
+                .subscribe(
+                        batch -> stream(routingContext.response(), batch, inputOrder),
+                        error -> RoutingFailures.fail(routingContext, error));
+    }
+
+    /**
+     * Reads the operations and the byte range of each element of {@code messages}, in any field order.
+     */
+    @Nonnull
+    private Batch decodeJson(@Nonnull byte[] body) throws IOException {
+        List<UpOperation> operations = null;
+        List<MessageSource> messages = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("the batch must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("operations".equals(field)) {
+                    operations = operationsReader.readValue(parser);
+                } else if ("messages".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        int start = (int) parser.currentTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        parser.finishToken();
+                        int end = (int) parser.currentLocation().getByteOffset();
+                        messages.add(new MessageSource(start, end - start));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        MappingPlan<UpMessage> plan =
+                operationService.compileUpOperations(operations == null ? Collections.emptyList() : operations);
+        return new Batch(plan, body, messages);
+    }
+
+    @Nonnull
+    private Batch decodeNdjson(@Nonnull byte[] body) throws IOException {
+        MappingPlan<UpMessage> plan = null;
+        List<MessageSource> messages = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= body.length; i++) {
+            if (i < body.length && body[i] != '\n') {
+                continue;
+            }
+            int offset = start;
+            int length = i - start;
+            start = i + 1;
+            if (isBlank(body, offset, length)) {
+                continue;
+            }
+            if (plan == null) {
+                UpApplyBatchOperations request = batchOperationsReader.readValue(body, offset, length);
+                plan = operationService.compileUpOperations(request.operations);
+            } else {
+                messages.add(new MessageSource(offset, length));
+            }
+        }
+        if (plan == null) {
+            throw new IllegalArgumentException("the NDJSON batch must start with the operations line");
+        }
+        return new Batch(plan, body, messages);
+    }
+
+    private static boolean isBlank(@Nonnull byte[] body, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!Character.isWhitespace(body[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void stream(
+            @Nonnull HttpServerResponse response, @Nonnull Batch batch, boolean inputOrder) {
+        response.setChunked(true).putHeader(HttpHeaders.CONTENT_TYPE, NDJSON);
+        if (batch.messages.isEmpty()) {
+            response.end();
+            return;
+        }
+        BatchRun run = new BatchRun(response, batch, new BatchWriter(response, batch.messages.size(), inputOrder));
+        response.drainHandler(v -> run.submit());
+        run.submit();
+    }
+
+    @Nonnull
+    private static Buffer applyItem(@Nonnull Batch batch, int index) {
+        MessageSource message = batch.messages.get(index);
+        UpApplyBatchItem item = new UpApplyBatchItem(index);
+        try {
+            item.message = batch.plan.apply(batch.reader.read(batch.body, message.offset, message.length)).orElse(null);
+        } catch (Exception e) {
+            item.error = new UpApplyBatchItem.ErrorInfo(e);
+        }
+        return toLine(item);
+    }
+
+    @Nonnull
+    private static Buffer errorLine(int index, @Nonnull Throwable error) {
+        UpApplyBatchItem item = new UpApplyBatchItem(index);
+        item.error = new UpApplyBatchItem.ErrorInfo(error);
+        return toLine(item);
+    }
+
+    @Nonnull
+    private static Buffer toLine(@Nonnull UpApplyBatchItem item) {
+        try {
+            return Buffer.buffer(batchItemWriter.writeValueAsBytes(item)).appendByte((byte) '\n');
+        } catch (IOException e) {
+            LOG.warn("Cannot serialize batch item {}", item.index, e);
+            return Buffer.buffer(
+                    "{\"index\":" + item.index + ",\"error\":{\"message\":\"cannot serialize message\"}}\n");
+        }
+    }
+
+    /**
+     * The bytes of one message in the batch body; their length selects the execution mode of the message.
+     */
+    private static final class MessageSource {
+        private final int offset;
+        private final int length;
+
+        private MessageSource(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Batch {
+        @Nonnull
+        private final MappingPlan<UpMessage> plan;
+        @Nonnull
+        private final UpMessageReader reader;
+        @Nonnull
+        private final byte[] body;
+        @Nonnull
+        private final List<MessageSource> messages;
+
+        private Batch(
+                @Nonnull MappingPlan<UpMessage> plan,
+                @Nonnull byte[] body,
+                @Nonnull List<MessageSource> messages) {
+            this.plan = plan;
+            this.reader = new UpMessageReader(plan);
+            this.body = body;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * Maps the messages of a batch through a sliding window: a message is only submitted to the mapping executor
+     * when fewer than {@link #MAXIMUM_IN_FLIGHT} messages after the last written line are mapped or waiting to be
+     * written. A large batch thus neither saturates the executor queue shared with the other requests nor buffers
+     * its results, even in input order behind a slow message. Submission also pauses while the response write queue
+     * is full and resumes from its drain handler. A message rejected by a saturated executor gets an error line.
+     * Only used from the event loop of the request, where {@link MappingExecutor} completes the mappings.
+     */
+    private final class BatchRun {
+        @Nonnull
+        private final HttpServerResponse response;
+        @Nonnull
+        private final Batch batch;
+        @Nonnull
+        private final BatchWriter writer;
+        private int next;
+        /**
+         * Set while the window is filled: mappings on the event loop complete before their submission returns.
+         */
+        private boolean submitting;
+
+        private BatchRun(@Nonnull HttpServerResponse response, @Nonnull Batch batch, @Nonnull BatchWriter writer) {
+            this.response = response;
+            this.batch = batch;
+            this.writer = writer;
+        }
+
+        private void submit() {
+            if (submitting) {
+                return;
+            }
+            submitting = true;
+            try {
+                while (next < batch.messages.size()
+                        && next - writer.written < MAXIMUM_IN_FLIGHT
+                        && !response.writeQueueFull()
+                        && !response.closed()) {
+                    int index = next++;
+                    mappingExecutor
+                            .execute(batch.messages.get(index).length, () -> applyItem(batch, index))
+                            .subscribe(
+                                    line -> complete(index, line),
+                                    error -> complete(index, errorLine(index, error)));
+                }
+            } finally {
+                submitting = false;
+            }
+        }
+
+        private void complete(int index, @Nonnull Buffer line) {
+            writer.write(index, line);
+            submit();
+        }
+    }
+
+    /**
+     * Writes the lines of a batch. In input order, the lines completed ahead of the next one to write are kept in a
+     * ring indexed by message index, which the window of {@link BatchRun} bounds. Only used from the event loop of the
+     * request.
+     */
+    private static final class BatchWriter {
+        @Nonnull
+        private final HttpServerResponse response;
+        @Nullable
+        private final Buffer[] pending;
+        /**
+         * Number of lines written; in input order, the index of the next line to write.
+         */
+        private int written;
+        private int remaining;
+
+        private BatchWriter(@Nonnull HttpServerResponse response, int size, boolean inputOrder) {
+            this.response = response;
+            this.pending = inputOrder ? new Buffer[Math.min(size, MAXIMUM_IN_FLIGHT)] : null;
+            this.remaining = size;
+        }
+
+        private void write(int index, @Nonnull Buffer line) {
+            if (pending == null) {
+                send(line);
+                written++;
+            } else {
+                pending[index % pending.length] = line;
+                Buffer next;
+                while ((next = pending[written % pending.length]) != null) {
+                    send(next);
+                    pending[written % pending.length] = null;
+                    written++;
+                }
+            }
+            if (--remaining == 0 && !response.closed()) {
+                response.end();
+            }
+        }
+
+        private void send(@Nonnull Buffer line) {
+            if (!response.closed()) {
+                response.write(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.ontology.mapping.java.lib.data.DownOperation;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Typed view of the {@code DownApplyOperations} request body, decoded in a single pass so the message does not go
+ * through an intermediate {@code ObjectNode}.
+ */
+class DownApplyRequest {
+
+    @JsonProperty("message")
+    DownMessage message;
+
+    @JsonProperty("operationsDown")
+    List<DownOperation> operationsDown;
+}
@@ -0,0 +1,56 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.commons.http.server.controller.OpenAPI3Controller;
+import com.actility.m2m.ontology.mapper.metrics.MappingMetrics;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+
+/**
+ * Exposes the mapping and executor metrics in the Prometheus text format.
+ */
+public class MetricsController implements OpenAPI3Controller {
+    @Nonnull
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    @Nonnull
+    private final MappingMetrics mappingMetrics;
+    @Nonnull
+    private final MappingExecutor mappingExecutor;
+
+    @Inject
+    public MetricsController(@Nonnull MappingMetrics mappingMetrics, @Nonnull MappingExecutor mappingExecutor) {
+        this.mappingMetrics = mappingMetrics;
+        this.mappingExecutor = mappingExecutor;
+    }
+
+    @Override
+    public void register(OpenAPI3RouterFactory router) {
+        router.addHandlerByOperationId("getMetrics", this::handleGetMetrics);
+    }
+
+    private void handleGetMetrics(@Nonnull RoutingContext routingContext) {
+        StringBuilder out = new StringBuilder(4096);
+        mappingMetrics.writePrometheus(out);
+        out.append("# HELP ontology_mapping_executor_queue_time_seconds Time spent waiting for a mapping thread\n")
+                .append("# TYPE ontology_mapping_executor_queue_time_seconds summary\n")
+                .append("ontology_mapping_executor_queue_time_seconds_sum ")
+                .append(mappingExecutor.getQueueTimeTotalNanos() / 1e9).append('\n')
+                .append("ontology_mapping_executor_queue_time_seconds_count ")
+                .append(mappingExecutor.getQueueTimeCount()).append('\n')
+                .append("# HELP ontology_mapping_executor_queue_time_max_seconds Longest wait for a mapping thread\n")
+                .append("# TYPE ontology_mapping_executor_queue_time_max_seconds gauge\n")
+                .append("ontology_mapping_executor_queue_time_max_seconds ")
+                .append(mappingExecutor.getQueueTimeMaxNanos() / 1e9).append('\n')
+                .append("# HELP ontology_mapping_executor_rejected_total Mappings rejected by a saturated executor\n")
+                .append("# TYPE ontology_mapping_executor_rejected_total counter\n")
+                .append("ontology_mapping_executor_rejected_total ")
+                .append(mappingExecutor.getRejectedCount()).append('\n');
+        routingContext.response()
+                .putHeader(HttpHeaders.CONTENT_TYPE, PROMETHEUS_TEXT)
+                .end(out.toString());
+    }
+}
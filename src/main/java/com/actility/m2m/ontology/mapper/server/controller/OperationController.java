@@ -3,11 +3,12 @@ package com.actility.m2m.ontology.mapper.server.controller;
 import com.actility.m2m.commons.http.server.CommonsRoutingContext;
 import com.actility.m2m.commons.http.server.controller.OpenAPI3Controller;
 import com.actility.m2m.commons.service.mapper.JsonMapper;
-import com.actility.m2m.flow.data.DownMessage;
-import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.ontology.mapper.OperationService;
-import com.actility.m2m.ontology.mapping.java.lib.data.DownApplyOperations;
-import com.actility.m2m.ontology.mapping.java.lib.data.UpApplyOperations;
+import com.actility.m2m.ontology.mapper.metrics.LatencyHistogram;
+import com.actility.m2m.ontology.mapper.metrics.MappingMetrics;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.net.MediaType;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
@@ -16,21 +17,39 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
-import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 public class OperationController implements OpenAPI3Controller {
     @Nonnull
     private static final Logger LOG = LoggerFactory.getLogger(OperationController.class);
     @Nonnull
+    private static final ObjectReader upApplyRequestReader =
+            ObjectMapperModule.createObjectMapper().readerFor(UpApplyRequest.class);
+    @Nonnull
+    private static final ObjectReader downApplyRequestReader =
+            ObjectMapperModule.createObjectMapper().readerFor(DownApplyRequest.class);
+    @Nonnull
     private OperationService operationService;
     @Nonnull
+    private MappingExecutor mappingExecutor;
+    @Nonnull
     private JsonMapper jsonMapper;
+    @Nonnull
+    private LatencyHistogram upLatency;
+    @Nonnull
+    private LatencyHistogram downLatency;
 
     @Inject
-    public OperationController(@Nonnull OperationService operationService, @Nonnull JsonMapper jsonMapper) {
+    public OperationController(
+            @Nonnull OperationService operationService,
+            @Nonnull MappingExecutor mappingExecutor,
+            @Nonnull MappingMetrics mappingMetrics,
+            @Nonnull JsonMapper jsonMapper) {
         this.operationService = operationService;
+        this.mappingExecutor = mappingExecutor;
         this.jsonMapper = jsonMapper;
+        this.upLatency = mappingMetrics.route("applyOperations");
+        this.downLatency = mappingMetrics.route("applyOperationsDown");
     }
 
     @Override
@@ -40,43 +59,49 @@ public class OperationController implements OpenAPI3Controller {
     }
 
     private void handleApplyOperations(@Nonnull RoutingContext routingContext) {
+        long start = System.nanoTime();
         CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
 
         commonsRoutingContext
                 .readBody()
-                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
-                .map(body -> jsonMapper.fromJson(body, UpApplyOperations.class))
-                .map(
-                        requestJson ->
-                                operationService.applyUpOperations(
-                                        jsonMapper.fromJson(jsonMapper.toJson(requestJson.message), UpMessage.class),
-                                        requestJson.operations))
+                .flatMap(buffer -> mappingExecutor.execute(buffer.length(), () -> {
+                    UpApplyRequest requestJson = upApplyRequestReader.readValue(buffer.getBytes());
+                    return operationService.applyUpOperations(requestJson.message, requestJson.operations);
+                }))
                 .subscribe(
-                        upMessage ->
-                                commonsRoutingContext
-                                        .response()
-                                        .setContentType(MediaType.JSON_UTF_8)
-                                        .end(jsonMapper.toJson(Optional.ofNullable(upMessage))),
-                        routingContext::fail);
+                        upMessage -> {
+                            commonsRoutingContext
+                                    .response()
+                                    .setContentType(MediaType.JSON_UTF_8)
+                                    .end(jsonMapper.toJson(Optional.ofNullable(upMessage)));
+                            upLatency.record(System.nanoTime() - start);
+                        },
+                        error -> {
+                            RoutingFailures.fail(routingContext, error);
+                            upLatency.record(System.nanoTime() - start);
+                        });
     }
     private void handleApplyOperationsDown(@Nonnull RoutingContext routingContext) {
+        long start = System.nanoTime();
         CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
 
         commonsRoutingContext
                 .readBody()
-                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
-                .map(body -> jsonMapper.fromJson(body, DownApplyOperations.class))
-                .map(
-                        requestJson ->
-                                operationService.applyDownOperations(
-                                        jsonMapper.fromJson(jsonMapper.toJson(requestJson.message), DownMessage.class),
-                                        requestJson.operationsDown))
+                .flatMap(buffer -> mappingExecutor.execute(buffer.length(), () -> {
+                    DownApplyRequest requestJson = downApplyRequestReader.readValue(buffer.getBytes());
+                    return operationService.applyDownOperations(requestJson.message, requestJson.operationsDown);
+                }))
                 .subscribe(
-                        downMessage ->
-                                commonsRoutingContext
-                                        .response()
-                                        .setContentType(MediaType.JSON_UTF_8)
-                                        .end(jsonMapper.toJson(Optional.ofNullable(downMessage))),
-                        routingContext::fail);
+                        downMessage -> {
+                            commonsRoutingContext
+                                    .response()
+                                    .setContentType(MediaType.JSON_UTF_8)
+                                    .end(jsonMapper.toJson(Optional.ofNullable(downMessage)));
+                            downLatency.record(System.nanoTime() - start);
+                        },
+                        error -> {
+                            RoutingFailures.fail(routingContext, error);
+                            downLatency.record(System.nanoTime() - start);
+                        });
     }
 }
\ No newline at end of file
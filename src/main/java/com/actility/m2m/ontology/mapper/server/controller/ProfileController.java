@@ -0,0 +1,232 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.commons.http.server.CommonsRoutingContext;
+import com.actility.m2m.commons.http.server.controller.OpenAPI3Controller;
+import com.actility.m2m.commons.service.mapper.JsonMapper;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.DownMessage;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.UpMessageReader;
+import com.actility.m2m.ontology.mapper.metrics.LatencyHistogram;
+import com.actility.m2m.ontology.mapper.metrics.MappingMetrics;
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import com.actility.m2m.ontology.mapper.profile.MappingProfile;
+import com.actility.m2m.ontology.mapper.profile.ProfileNotFoundException;
+import com.actility.m2m.ontology.mapper.profile.ProfileRegistry;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import com.actility.m2m.ontology.mapping.java.lib.data.MappingProfileOperations;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.MediaType;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * CRUD on the mapping profiles and apply endpoints that reference a profile by id, so that steady-state requests
+ * only carry the message. Updates compile the profile and write its file, so they run on the worker pool.
+ */
+public class ProfileController implements OpenAPI3Controller {
+    @Nonnull
+    private static final String PROFILE_ID = "profileId";
+    @Nonnull
+    private static final ObjectReader profileOperationsReader =
+            ObjectMapperModule.createObjectMapper().readerFor(MappingProfileOperations.class);
+    @Nonnull
+    private static final ObjectReader downMessageReader =
+            ObjectMapperModule.createObjectMapper().readerFor(DownMessage.class);
+    @Nonnull
+    private final ProfileRegistry profileRegistry;
+    @Nonnull
+    private final MappingExecutor mappingExecutor;
+    @Nonnull
+    private final JsonMapper jsonMapper;
+    @Nonnull
+    private final LatencyHistogram upLatency;
+    @Nonnull
+    private final LatencyHistogram downLatency;
+
+    @Inject
+    public ProfileController(
+            @Nonnull ProfileRegistry profileRegistry,
+            @Nonnull MappingExecutor mappingExecutor,
+            @Nonnull MappingMetrics mappingMetrics,
+            @Nonnull JsonMapper jsonMapper) {
+        this.profileRegistry = profileRegistry;
+        this.mappingExecutor = mappingExecutor;
+        this.jsonMapper = jsonMapper;
+        this.upLatency = mappingMetrics.route("applyProfile");
+        this.downLatency = mappingMetrics.route("applyProfileDown");
+    }
+
+    @Override
+    public void register(OpenAPI3RouterFactory router) {
+        router.addHandlerByOperationId("listProfiles", this::handleListProfiles);
+        router.addHandlerByOperationId("getProfile", this::handleGetProfile);
+        router.addHandlerByOperationId("putProfile", this::handlePutProfile);
+        router.addHandlerByOperationId("deleteProfile", this::handleDeleteProfile);
+        router.addHandlerByOperationId("explainProfile", this::handleExplainProfile);
+        router.addHandlerByOperationId("applyProfile", this::handleApplyProfile);
+        router.addHandlerByOperationId("applyProfileDown", this::handleApplyProfileDown);
+    }
+
+    private void handleListProfiles(@Nonnull RoutingContext routingContext) {
+        CommonsRoutingContext.wrap(routingContext)
+                .response()
+                .setContentType(MediaType.JSON_UTF_8)
+                .end(jsonMapper.toJson(profileRegistry.list()));
+    }
+
+    private void handleGetProfile(@Nonnull RoutingContext routingContext) {
+        String profileId = routingContext.pathParam(PROFILE_ID);
+        Optional<MappingProfile> profile = profileRegistry.get(profileId);
+        if (!profile.isPresent()) {
+            RoutingFailures.fail(routingContext, new ProfileNotFoundException(profileId));
+            return;
+        }
+        CommonsRoutingContext.wrap(routingContext)
+                .response()
+                .setContentType(MediaType.JSON_UTF_8)
+                .end(jsonMapper.toJson(profile.get()));
+    }
+
+    private void handlePutProfile(@Nonnull RoutingContext routingContext) {
+        CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
+        String profileId = routingContext.pathParam(PROFILE_ID);
+
+        commonsRoutingContext
+                .readBody()
+                .map(buffer -> profileOperationsReader.<MappingProfileOperations>readValue(buffer.getBytes()))
+                .flatMap(
+                        request ->
+                                mappingExecutor.execute(
+                                        ExecutionMode.WORKER,
+                                        () -> profileRegistry.put(
+                                                profileId,
+                                                request.operations,
+                                                request.operationsDown,
+                                                executionMode(request))))
+                .subscribe(
+                        profile ->
+                                commonsRoutingContext
+                                        .response()
+                                        .setContentType(MediaType.JSON_UTF_8)
+                                        .end(jsonMapper.toJson(profile)),
+                        error -> RoutingFailures.fail(routingContext, error));
+    }
+
+    private void handleDeleteProfile(@Nonnull RoutingContext routingContext) {
+        String profileId = routingContext.pathParam(PROFILE_ID);
+        mappingExecutor
+                .execute(ExecutionMode.WORKER, () -> profileRegistry.delete(profileId))
+                .subscribe(
+                        deleted -> {
+                            if (deleted) {
+                                routingContext.response().setStatusCode(204).end();
+                            } else {
+                                RoutingFailures.fail(routingContext, new ProfileNotFoundException(profileId));
+                            }
+                        },
+                        error -> RoutingFailures.fail(routingContext, error));
+    }
+
+    private void handleExplainProfile(@Nonnull RoutingContext routingContext) {
+        String profileId = routingContext.pathParam(PROFILE_ID);
+        Map<String, List<String>> explain;
+        try {
+            explain = ImmutableMap.of(
+                    "operations", profileRegistry.getUpPlan(profileId).getExplain(),
+                    "operationsDown", profileRegistry.getDownPlan(profileId).getExplain());
+        } catch (RuntimeException e) {
+            RoutingFailures.fail(routingContext, e);
+            return;
+        }
+        CommonsRoutingContext.wrap(routingContext)
+                .response()
+                .setContentType(MediaType.JSON_UTF_8)
+                .end(jsonMapper.toJson(explain));
+    }
+
+    /**
+     * The generated request model carries its own copy of the {@link ExecutionMode} values.
+     */
+    @Nullable
+    private static ExecutionMode executionMode(@Nonnull MappingProfileOperations request) {
+        return request.executionMode == null ? null : ExecutionMode.valueOf(request.executionMode.name());
+    }
+
+    /**
+     * @return the mode set on the profile, else the mode of the payload size class; an unknown profile fails when
+     * its plan is looked up
+     */
+    @Nonnull
+    private ExecutionMode modeFor(@Nonnull String profileId, int payloadBytes) {
+        return profileRegistry.get(profileId)
+                .map(profile -> profile.executionMode)
+                .orElseGet(() -> mappingExecutor.modeFor(payloadBytes));
+    }
+
+    private void handleApplyProfile(@Nonnull RoutingContext routingContext) {
+        long start = System.nanoTime();
+        CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
+        String profileId = routingContext.pathParam(PROFILE_ID);
+
+        commonsRoutingContext
+                .readBody()
+                .flatMap(
+                        buffer ->
+                                mappingExecutor.execute(
+                                        modeFor(profileId, buffer.length()),
+                                        () -> {
+                                            MappingPlan<UpMessage> plan = profileRegistry.getUpPlan(profileId);
+                                            return plan.apply(new UpMessageReader(plan).read(buffer.getBytes()));
+                                        }))
+                .subscribe(
+                        upMessage -> {
+                            commonsRoutingContext
+                                    .response()
+                                    .setContentType(MediaType.JSON_UTF_8)
+                                    .end(jsonMapper.toJson(upMessage));
+                            upLatency.record(System.nanoTime() - start);
+                        },
+                        error -> {
+                            RoutingFailures.fail(routingContext, error);
+                            upLatency.record(System.nanoTime() - start);
+                        });
+    }
+
+    private void handleApplyProfileDown(@Nonnull RoutingContext routingContext) {
+        long start = System.nanoTime();
+        CommonsRoutingContext commonsRoutingContext = CommonsRoutingContext.wrap(routingContext);
+        String profileId = routingContext.pathParam(PROFILE_ID);
+
+        commonsRoutingContext
+                .readBody()
+                .flatMap(
+                        buffer ->
+                                mappingExecutor.execute(
+                                        modeFor(profileId, buffer.length()),
+                                        () -> profileRegistry
+                                                .getDownPlan(profileId)
+                                                .apply(downMessageReader.<DownMessage>readValue(buffer.getBytes()))))
+                .subscribe(
+                        downMessage -> {
+                            commonsRoutingContext
+                                    .response()
+                                    .setContentType(MediaType.JSON_UTF_8)
+                                    .end(jsonMapper.toJson(downMessage));
+                            downLatency.record(System.nanoTime() - start);
+                        },
+                        error -> {
+                            RoutingFailures.fail(routingContext, error);
+                            downLatency.record(System.nanoTime() - start);
+                        });
+    }
+}
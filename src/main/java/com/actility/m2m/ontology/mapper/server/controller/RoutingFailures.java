@@ -0,0 +1,30 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.ontology.mapper.profile.InvalidProfileException;
+import com.actility.m2m.ontology.mapper.profile.ProfileNotFoundException;
+import com.actility.m2m.ontology.mapper.server.execution.MappingRejectedException;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Fails a request with the status of the errors raised by this server, other errors go to the server error handler
+ * unchanged.
+ */
+final class RoutingFailures {
+
+    private RoutingFailures() {
+    }
+
+    static void fail(@Nonnull RoutingContext routingContext, @Nonnull Throwable error) {
+        if (error instanceof ProfileNotFoundException) {
+            routingContext.fail(404, error);
+        } else if (error instanceof InvalidProfileException) {
+            routingContext.fail(400, error);
+        } else if (error instanceof MappingRejectedException) {
+            routingContext.fail(503, error);
+        } else {
+            routingContext.fail(error);
+        }
+    }
+}
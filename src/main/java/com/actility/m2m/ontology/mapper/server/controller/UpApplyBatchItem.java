@@ -0,0 +1,46 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.flow.data.UpMessage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * One NDJSON line of the batch response. A missing {@code message} without {@code error} means the message was
+ * dropped by the operations.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class UpApplyBatchItem {
+
+    @JsonProperty("index")
+    final int index;
+
+    @Nullable
+    @JsonProperty("message")
+    UpMessage message;
+
+    @Nullable
+    @JsonProperty("error")
+    ErrorInfo error;
+
+    UpApplyBatchItem(int index) {
+        this.index = index;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class ErrorInfo {
+
+        @JsonProperty("code")
+        final String code;
+
+        @JsonProperty("message")
+        final String message;
+
+        ErrorInfo(@Nonnull Throwable error) {
+            this.code = error.getClass().getSimpleName();
+            this.message = error.getMessage();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.actility.m2m.ontology.mapper.server.controller;
+
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Typed view of the {@code UpApplyOperations} request body, decoded in a single pass so the message does not go
+ * through an intermediate {@code ObjectNode}.
+ */
+class UpApplyRequest {
+
+    @JsonProperty("message")
+    UpMessage message;
+
+    @JsonProperty("operations")
+    List<UpOperation> operations;
+}
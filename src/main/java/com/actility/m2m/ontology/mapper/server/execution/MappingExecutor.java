@@ -0,0 +1,168 @@
+package com.actility.m2m.ontology.mapper.server.execution;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the mapping stage of a request in the {@link ExecutionMode} chosen from the payload size class, and brings the
+ * result back to the calling event loop. Both off-loop modes are bounded: the worker pool by its queue, virtual
+ * threads by a number of in-flight tasks. A saturated executor fails with {@link MappingRejectedException}.
+ */
+public class MappingExecutor {
+
+    @Nonnull
+    private final ExecutorService workerExecutor;
+    @Nullable
+    private final ExecutorService virtualExecutor;
+    @Nonnull
+    private final Semaphore virtualPermits;
+    @Nonnull
+    private final ExecutionMode smallMode;
+    @Nonnull
+    private final ExecutionMode largeMode;
+    private final int largePayloadBytes;
+
+    @Nonnull
+    private final LongAdder queueTimeCount = new LongAdder();
+    @Nonnull
+    private final LongAdder queueTimeTotalNanos = new LongAdder();
+    @Nonnull
+    private final LongAccumulator queueTimeMaxNanos = new LongAccumulator(Math::max, 0L);
+    @Nonnull
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param virtualExecutor a thread-per-task virtual thread executor, {@code null} when the runtime has none
+     * @param virtualLimit    maximum number of mappings in flight on virtual threads
+     * @param smallMode       mode of payloads smaller than {@code largePayloadBytes}
+     * @param largeMode       mode of the other payloads
+     */
+    public MappingExecutor(
+            @Nonnull ExecutorService workerExecutor,
+            @Nullable ExecutorService virtualExecutor,
+            int virtualLimit,
+            @Nonnull ExecutionMode smallMode,
+            @Nonnull ExecutionMode largeMode,
+            int largePayloadBytes) {
+        this.workerExecutor = workerExecutor;
+        this.virtualExecutor = virtualExecutor;
+        this.virtualPermits = new Semaphore(virtualLimit);
+        this.smallMode = smallMode;
+        this.largeMode = largeMode;
+        this.largePayloadBytes = largePayloadBytes;
+    }
+
+    @Nonnull
+    public ExecutionMode modeFor(int payloadBytes) {
+        ExecutionMode mode = payloadBytes < largePayloadBytes ? smallMode : largeMode;
+        return mode == ExecutionMode.VIRTUAL && virtualExecutor == null ? ExecutionMode.WORKER : mode;
+    }
+
+    @Nonnull
+    public <T> Single<T> execute(int payloadBytes, @Nonnull Callable<T> task) {
+        return execute(modeFor(payloadBytes), task);
+    }
+
+    @Nonnull
+    public <T> Single<T> execute(@Nonnull ExecutionMode mode, @Nonnull Callable<T> task) {
+        switch (mode) {
+            case WORKER:
+                return Single.create(emitter -> submitWorker(emitter, task));
+            case VIRTUAL:
+                return virtualExecutor == null
+                        ? Single.create(emitter -> submitWorker(emitter, task))
+                        : Single.create(emitter -> submitVirtual(emitter, task));
+            case EVENT_LOOP:
+            default:
+                return Single.fromCallable(task);
+        }
+    }
+
+    public long getQueueTimeCount() {
+        return queueTimeCount.sum();
+    }
+
+    public long getQueueTimeTotalNanos() {
+        return queueTimeTotalNanos.sum();
+    }
+
+    public long getQueueTimeMaxNanos() {
+        return queueTimeMaxNanos.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private <T> void submitWorker(@Nonnull SingleEmitter<T> emitter, @Nonnull Callable<T> task) {
+        Context context = Vertx.currentContext();
+        long submitted = System.nanoTime();
+        try {
+            workerExecutor.execute(() -> run(emitter, task, context, submitted));
+        } catch (RejectedExecutionException e) {
+            reject(emitter, ExecutionMode.WORKER);
+        }
+    }
+
+    private <T> void submitVirtual(@Nonnull SingleEmitter<T> emitter, @Nonnull Callable<T> task) {
+        if (!virtualPermits.tryAcquire()) {
+            reject(emitter, ExecutionMode.VIRTUAL);
+            return;
+        }
+        Context context = Vertx.currentContext();
+        long submitted = System.nanoTime();
+        try {
+            virtualExecutor.execute(() -> {
+                try {
+                    run(emitter, task, context, submitted);
+                } finally {
+                    virtualPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            virtualPermits.release();
+            reject(emitter, ExecutionMode.VIRTUAL);
+        }
+    }
+
+    private <T> void run(
+            @Nonnull SingleEmitter<T> emitter, @Nonnull Callable<T> task, @Nullable Context context, long submitted) {
+        long queueTime = System.nanoTime() - submitted;
+        queueTimeCount.increment();
+        queueTimeTotalNanos.add(queueTime);
+        queueTimeMaxNanos.accumulate(queueTime);
+        T result;
+        try {
+            result = task.call();
+        } catch (Throwable e) {
+            complete(context, () -> emitter.tryOnError(e));
+            return;
+        }
+        complete(context, () -> emitter.onSuccess(result));
+    }
+
+    private void reject(@Nonnull SingleEmitter<?> emitter, @Nonnull ExecutionMode mode) {
+        rejectedCount.increment();
+        emitter.tryOnError(new MappingRejectedException(mode));
+    }
+
+    private static void complete(@Nullable Context context, @Nonnull Runnable completion) {
+        if (context == null) {
+            completion.run();
+        } else {
+            context.runOnContext(v -> completion.run());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.actility.m2m.ontology.mapper.server.execution;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+
+public class MappingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    public final ExecutionMode mode;
+
+    public MappingRejectedException(ExecutionMode mode) {
+        super("the mapping " + mode.name().toLowerCase() + " executor is saturated");
+        this.mode = mode;
+    }
+}
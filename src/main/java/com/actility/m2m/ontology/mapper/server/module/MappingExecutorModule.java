@@ -0,0 +1,87 @@
+package com.actility.m2m.ontology.mapper.server.module;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import com.actility.m2m.ontology.mapper.server.execution.MappingExecutor;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dagger.Module;
+import dagger.Provides;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Module
+public class MappingExecutorModule {
+    @Nonnull
+    private static final Logger LOG = LoggerFactory.getLogger(MappingExecutorModule.class);
+
+    public static final String MAPPING_EXECUTOR = "mappingExecutor";
+
+    public static final String WORKER_THREADS_KEY = "mapping.worker.threads";
+    public static final String WORKER_THREADS_ENV = "MAPPING_WORKER_THREADS";
+    public static final String QUEUE_CAPACITY_KEY = "mapping.queue.capacity";
+    public static final String QUEUE_CAPACITY_ENV = "MAPPING_QUEUE_CAPACITY";
+    public static final String VIRTUAL_MAX_IN_FLIGHT_KEY = "mapping.virtual.maxInFlight";
+    public static final String VIRTUAL_MAX_IN_FLIGHT_ENV = "MAPPING_VIRTUAL_MAX_IN_FLIGHT";
+    public static final String SMALL_PAYLOAD_MODE_KEY = "mapping.smallPayload.mode";
+    public static final String SMALL_PAYLOAD_MODE_ENV = "MAPPING_SMALL_PAYLOAD_MODE";
+    public static final String LARGE_PAYLOAD_MODE_KEY = "mapping.largePayload.mode";
+    public static final String LARGE_PAYLOAD_MODE_ENV = "MAPPING_LARGE_PAYLOAD_MODE";
+    public static final String LARGE_PAYLOAD_BYTES_KEY = "mapping.largePayload.bytes";
+    public static final String LARGE_PAYLOAD_BYTES_ENV = "MAPPING_LARGE_PAYLOAD_BYTES";
+
+    @Provides
+    @Singleton
+    @Named(MAPPING_EXECUTOR)
+    @Nonnull
+    public ExecutorService provideMappingExecutorService() {
+        int threads = ModuleSettings.positiveIntSetting(
+                WORKER_THREADS_KEY, WORKER_THREADS_ENV, Runtime.getRuntime().availableProcessors());
+        int queueCapacity = ModuleSettings.positiveIntSetting(QUEUE_CAPACITY_KEY, QUEUE_CAPACITY_ENV, 1024);
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("mapping-%d").setDaemon(true).build());
+    }
+
+    /**
+     * The mode of a request follows the size class of its payload, small or large; a mapping profile may set the mode
+     * of its own messages instead, see {@link com.actility.m2m.ontology.mapper.profile.MappingProfile}.
+     */
+    @Provides
+    @Singleton
+    @Nonnull
+    public MappingExecutor provideMappingExecutor(@Nonnull @Named(MAPPING_EXECUTOR) ExecutorService workerExecutor) {
+        return new MappingExecutor(
+                workerExecutor,
+                createVirtualThreadExecutor(),
+                ModuleSettings.positiveIntSetting(VIRTUAL_MAX_IN_FLIGHT_KEY, VIRTUAL_MAX_IN_FLIGHT_ENV, 10_000),
+                ModuleSettings.modeSetting(SMALL_PAYLOAD_MODE_KEY, SMALL_PAYLOAD_MODE_ENV, ExecutionMode.EVENT_LOOP),
+                ModuleSettings.modeSetting(LARGE_PAYLOAD_MODE_KEY, LARGE_PAYLOAD_MODE_ENV, ExecutionMode.WORKER),
+                ModuleSettings.positiveIntSetting(LARGE_PAYLOAD_BYTES_KEY, LARGE_PAYLOAD_BYTES_ENV, 16 * 1024));
+    }
+
+    /**
+     * Virtual threads are looked up reflectively so that the server still runs on runtimes that predate them.
+     */
+    @Nullable
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.info("Virtual threads are not available, the VIRTUAL mapping mode uses the worker pool");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.actility.m2m.ontology.mapper.server.module;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reads the {@code mapping.*} settings documented in {@code app.properties}. A key is looked up as a system property
+ * first, then as the environment variable of its default value; a missing or blank value falls back to the default.
+ */
+final class ModuleSettings {
+
+    private ModuleSettings() {
+    }
+
+    @Nullable
+    static String get(@Nonnull String key, @Nonnull String env) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(env);
+        }
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+
+    static int positiveIntSetting(@Nonnull String key, @Nonnull String env, int defaultValue) {
+        return positiveInt(key, get(key, env), defaultValue);
+    }
+
+    @Nonnull
+    static ExecutionMode modeSetting(@Nonnull String key, @Nonnull String env, @Nonnull ExecutionMode defaultValue) {
+        return mode(key, get(key, env), defaultValue);
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the setting when the value is not a positive integer
+     */
+    static int positiveInt(@Nonnull String key, @Nullable String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a positive integer but is '" + value + "'", e);
+        }
+        if (parsed <= 0) {
+            throw new IllegalArgumentException(key + " must be a positive integer but is '" + value + "'");
+        }
+        return parsed;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the setting when the value is not an {@link ExecutionMode}
+     */
+    @Nonnull
+    static ExecutionMode mode(@Nonnull String key, @Nullable String value, @Nonnull ExecutionMode defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return ExecutionMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    key + " must be one of " + Arrays.toString(ExecutionMode.values()) + " but is '" + value + "'", e);
+        }
+    }
+}
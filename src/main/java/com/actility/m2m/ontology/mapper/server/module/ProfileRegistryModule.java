@@ -0,0 +1,28 @@
+package com.actility.m2m.ontology.mapper.server.module;
+
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.profile.ProfileRegistry;
+import dagger.Module;
+import dagger.Provides;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+@Module
+public class ProfileRegistryModule {
+
+    public static final String PROFILES_DIRECTORY_KEY = "mapping.profiles.directory";
+    public static final String PROFILES_DIRECTORY_ENV = "MAPPING_PROFILES_DIR";
+    public static final String DEFAULT_PROFILES_DIRECTORY = "profiles";
+
+    @Provides
+    @Singleton
+    @Nonnull
+    public ProfileRegistry provideProfileRegistry(@Nonnull OperationService operationService) {
+        String directory = Optional.ofNullable(ModuleSettings.get(PROFILES_DIRECTORY_KEY, PROFILES_DIRECTORY_ENV))
+                .orElse(DEFAULT_PROFILES_DIRECTORY);
+        return new ProfileRegistry(operationService, Paths.get(directory));
+    }
+}
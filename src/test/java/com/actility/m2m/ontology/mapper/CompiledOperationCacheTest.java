@@ -0,0 +1,49 @@
+package com.actility.m2m.ontology.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class CompiledOperationCacheTest {
+
+    @Test
+    public void should_compile_equal_operations_once() {
+        // Given
+        AtomicInteger compilations = new AtomicInteger();
+        CompiledOperation<String> compiled = context -> Optional.empty();
+        CompiledOperationCache<String, String> cache = new CompiledOperationCache<>(operation -> {
+            compilations.incrementAndGet();
+            return compiled;
+        });
+        //When
+        CompiledOperation<String> first = cache.get(new String("operation"));
+        CompiledOperation<String> second = cache.get(new String("operation"));
+        //Then
+        assertThat(first).isSameAs(compiled);
+        assertThat(second).isSameAs(compiled);
+        assertThat(compilations).hasValue(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_rethrow_compilation_error_without_caching_it() {
+        // Given
+        AtomicInteger compilations = new AtomicInteger();
+        CompiledOperationCache<String, String> cache = new CompiledOperationCache<>(operation -> {
+            compilations.incrementAndGet();
+            throw new IllegalArgumentException("invalid operation");
+        });
+        //When
+        Throwable first = catchThrowable(() -> cache.get("operation"));
+        Throwable second = catchThrowable(() -> cache.get("operation"));
+        //Then
+        assertThat(first).isInstanceOf(IllegalArgumentException.class).hasMessage("invalid operation");
+        assertThat(second).isInstanceOf(IllegalArgumentException.class);
+        assertThat(compilations).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,148 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.commons.service.mapper.JsonMapper;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageContextTest {
+
+    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+
+    private UpMessage buildInputUpMessage(Map<String, Point> inputPoints) {
+        return UpMessage.newUpMessageBuilder()
+                .id("00000000-000000-00000-000000000")
+                .time(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                .content(JsonNodeFactory.instance.objectNode())
+                .type(UpMessageType.DEVICEUPLINK)
+                .points(inputPoints)
+                .thing(Thing.newThingBuilder().key("lora:0102030405060708").build())
+                .packet(MessagePacket.newMessagePacketBuilder().message(JsonNodeFactory.instance.objectNode().put("temperature", 22.6)).build())
+                .build();
+    }
+
+    private Point buildPoint(String unitId) {
+        return Point.newPointBuilder().unitId(unitId).type(PointType.STRING).records(new ArrayList<>()).build();
+    }
+
+    @Test
+    public void should_patch_changed_points_only() {
+        // Given
+        Point unchanged = buildPoint("D");
+        UpMessage message1 = buildInputUpMessage(ImmutableMap.of("dummy1", unchanged, "dummy2", buildPoint("D")));
+        UpMessage message2 = UpMessage.newUpMessageBuilder(message1)
+                .points(ImmutableMap.of("dummy1", unchanged, "dummy3", buildPoint("Cel")))
+                .build();
+        MessageContext<UpMessage> context = MessageContext.of(message1);
+        JsonNode messageJson = context.getMessageJson();
+        JsonNode unchangedJson = messageJson.get("points").get("dummy1");
+        // When
+        context.update(message2);
+        // Then
+        assertThat(context.getMessage()).isSameAs(message2);
+        assertThat(context.getMessageJson()).isSameAs(messageJson);
+        assertThat(context.getMessageJson().get("points").get("dummy1")).isSameAs(unchangedJson);
+        assertThat(context.getMessageJson()).isEqualTo(jsonMapper.toJsonNode(message2));
+    }
+
+    @Test
+    public void should_rebuild_when_other_fields_change() {
+        // Given
+        UpMessage message1 = buildInputUpMessage(Collections.emptyMap());
+        UpMessage message2 = UpMessage.newUpMessageBuilder(message1).subType("subType1").build();
+        MessageContext<UpMessage> context = MessageContext.of(message1);
+        context.getMessageJson();
+        // When
+        context.update(message2);
+        // Then
+        assertThat(context.getMessageJson()).isEqualTo(jsonMapper.toJsonNode(message2));
+    }
+
+    @Test
+    public void should_patch_command_of_down_message() {
+        // Given
+        DownMessage message1 = DownMessage.newDownMessageBuilder()
+                .id("00000000-000000-00000-000000000")
+                .type(DownMessageType.DEVICEDOWNLINK)
+                .command(Command.newCommandBuilder().id("test").build())
+                .build();
+        DownMessage message2 = DownMessage.newDownMessageBuilder(message1)
+                .command(Command.newCommandBuilder().id("myDeviceCommand").build())
+                .build();
+        MessageContext<DownMessage> context = MessageContext.of(message1);
+        JsonNode messageJson = context.getMessageJson();
+        // When
+        context.update(message2);
+        // Then
+        assertThat(context.getMessageJson()).isSameAs(messageJson);
+        assertThat(context.getMessageJson()).isEqualTo(jsonMapper.toJsonNode(message2));
+    }
+
+    @Test
+    public void should_build_only_the_scoped_fields() {
+        // Given
+        UpMessage message = buildInputUpMessage(Collections.emptyMap());
+        MessageContext<UpMessage> context = MessageContext.of(message);
+        JsonNode fullJson = jsonMapper.toJsonNode(message);
+        // When
+        JsonNode scopedJson = context.getMessageJson(ImmutableSet.of("time", "packet", "subType"));
+        // Then
+        assertThat(scopedJson.size()).isEqualTo(2);
+        assertThat(scopedJson.get("time")).isEqualTo(fullJson.get("time"));
+        assertThat(scopedJson.get("packet")).isEqualTo(fullJson.get("packet"));
+        assertThat(context.getMessageJson(ImmutableSet.of("thing")).get("thing")).isEqualTo(fullJson.get("thing"));
+    }
+
+    @Test
+    public void should_patch_scoped_fields_on_update() {
+        // Given
+        UpMessage message1 = buildInputUpMessage(Collections.emptyMap());
+        UpMessage message2 = UpMessage.newUpMessageBuilder(message1).subType("subType1").build();
+        MessageContext<UpMessage> context = MessageContext.of(message1);
+        JsonNode scopedJson = context.getMessageJson(ImmutableSet.of("subType", "packet"));
+        // When
+        context.update(message2);
+        // Then
+        assertThat(context.getMessageJson(ImmutableSet.of("subType"))).isSameAs(scopedJson);
+        assertThat(scopedJson.get("subType").asText()).isEqualTo("subType1");
+    }
+
+    @Test
+    public void should_use_the_full_view_when_fields_are_unknown() {
+        // Given
+        UpMessage message = buildInputUpMessage(Collections.emptyMap());
+        MessageContext<UpMessage> context = MessageContext.of(message);
+        // When
+        JsonNode json = context.getMessageJson(null);
+        // Then
+        assertThat(json).isEqualTo(jsonMapper.toJsonNode(message));
+        assertThat(context.getMessageJson(ImmutableSet.of("time"))).isSameAs(json);
+    }
+
+    @Test
+    public void should_scope_every_serialized_property() {
+        // Given
+        UpMessage message = buildInputUpMessage(ImmutableMap.of("dummy1", buildPoint("D")));
+        MessageContext<UpMessage> context = MessageContext.of(message);
+        JsonNode fullJson = jsonMapper.toJsonNode(message);
+        Set<String> names = new HashSet<>();
+        fullJson.fieldNames().forEachRemaining(names::add);
+        // When
+        JsonNode scopedJson = context.getMessageJson(names);
+        // Then
+        assertThat(scopedJson).isEqualTo(fullJson);
+    }
+}
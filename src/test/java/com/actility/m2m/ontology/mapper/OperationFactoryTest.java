@@ -0,0 +1,52 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.ontology.mapper.operations.DownUpdateCommandOperation;
+import com.actility.m2m.ontology.mapper.operations.FilterOperation;
+import com.actility.m2m.ontology.mapper.operations.UpExtractPointsOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.*;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OperationFactoryTest {
+
+    @Test
+    public void should_return_same_handler_for_every_operation_of_a_type() {
+        // Given
+        OperationFactory operationFactory = new OperationFactory(Collections.emptyList());
+        UpExtractPoints first = UpExtractPoints.newUpExtractPointsBuilder().points(new HashMap<>()).build();
+        UpExtractPoints second = UpExtractPoints.newUpExtractPointsBuilder().points(new HashMap<>()).build();
+        //When
+        OperationHandler firstHandler = operationFactory.build(first);
+        OperationHandler secondHandler = operationFactory.build(second);
+        //Then
+        assertThat(firstHandler).isInstanceOf(UpExtractPointsOperation.class);
+        assertThat(secondHandler).isSameAs(firstHandler);
+        assertThat(operationFactory.build(UpFilterOperation.newUpFilterOperationBuilder().build()))
+                .isInstanceOf(FilterOperation.class);
+        assertThat(operationFactory.build(DownUpdateCommand.newDownUpdateCommandBuilder().commands(new HashMap<>()).build()))
+                .isInstanceOf(DownUpdateCommandOperation.class);
+    }
+
+    @Test
+    public void should_use_handlers_registered_by_providers() {
+        // Given
+        OperationHandler customHandler = Mockito.mock(OperationHandler.class);
+        OperationHandlerProvider provider = new OperationHandlerProvider() {
+            @Override
+            public Map<Class<? extends UpOperation>, OperationHandler> getUpOperationHandlers() {
+                return Collections.singletonMap(UpFilterOperation.class, customHandler);
+            }
+        };
+        OperationFactory operationFactory = new OperationFactory(Collections.singletonList(provider));
+        //When
+        OperationHandler handler = operationFactory.build(UpFilterOperation.newUpFilterOperationBuilder().build());
+        //Then
+        assertThat(handler).isSameAs(customHandler);
+    }
+}
@@ -7,6 +7,7 @@ import com.google.common.collect.ImmutableMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
@@ -20,11 +21,18 @@ public class OperationServiceTest {
     OperationService oprServ;
     OperationFactory operationFactory;
     OperationHandler operationHandler;
+    List<Object> receivedMessages;
 
     @BeforeEach
     public void setup() {
         operationFactory = Mockito.mock(OperationFactory.class);
-        operationHandler = Mockito.mock(OperationHandler.class);
+        receivedMessages = new ArrayList<>();
+        operationHandler = Mockito.mock(OperationHandler.class, Mockito.withSettings().invocationListeners(report -> {
+            Object[] arguments = ((Invocation) report.getInvocation()).getArguments();
+            if (arguments.length > 0 && arguments[0] instanceof MessageContext) {
+                receivedMessages.add(((MessageContext<?>) arguments[0]).getMessage());
+            }
+        }));
         oprServ = new OperationService(operationFactory);
     }
 
@@ -73,6 +81,18 @@ public class OperationServiceTest {
                         com.actility.m2m.flow.data.Subscriber.newSubscriberBuilder().id("sub1").realmId("realm1").build())
                 .build();
     }
+    private static <M> MessageContext<M> contextOf(M message) {
+        return Mockito.argThat(context -> context != null && context.getMessage() == message);
+    }
+
+    /**
+     * Verifies the messages the handler was called with, in order. The context is updated once the handler returns,
+     * so {@link #contextOf(Object)} only holds at call time: the messages are captured by an invocation listener.
+     */
+    private void verifyReceived(Object... messages) {
+        assertThat(receivedMessages).containsExactly(messages);
+    }
+
     @Test
     public void should_call_jmespath_operation_apply_operation() throws PointExtractionException {
         // Given
@@ -81,11 +101,12 @@ public class OperationServiceTest {
         UpExtractPoints jmesPath = UpExtractPoints.newUpExtractPointsBuilder().points(points).build();
 
         Mockito.when(operationFactory.build(jmesPath)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), jmesPath)).thenReturn(message1);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(jmesPath))).thenReturn(message1);
         // When
         message1 = oprServ.applyUpOperations(message1.get(), Collections.singletonList(jmesPath));
         // Then
-        Mockito.verify(operationHandler).applyUpOperation(message1.get(), jmesPath);
+        Mockito.verify(operationHandler).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(jmesPath));
+        verifyReceived(message1.get());
     }
 
     @Test
@@ -108,16 +129,16 @@ public class OperationServiceTest {
         Map<String, JmesPathPoint> points = new HashMap<>();
         UpExtractPoints jmesPath = UpExtractPoints.newUpExtractPointsBuilder().points(points).build();
         Mockito.when(operationFactory.build(jmesPath)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), jmesPath)).thenReturn(message2);
-        Mockito.when(operationHandler.applyUpOperation(message2.get(), jmesPath)).thenReturn(message3);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(jmesPath))).thenReturn(message2);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message2.get()), Mockito.eq(jmesPath))).thenReturn(message3);
 
         // When
         Optional<UpMessage> outputMessage1 = oprServ.applyUpOperations(message1.get(), Collections.nCopies(2, jmesPath));
 
         // Then
         Mockito.verify(operationFactory, times(2)).build(jmesPath);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message1.get(), jmesPath);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message2.get(), jmesPath);
+        Mockito.verify(operationHandler, times(2)).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(jmesPath));
+        verifyReceived(message1.get(), message2.get());
         assertThat(outputMessage1).isEqualTo(message3);
     }
     @Test
@@ -127,11 +148,12 @@ public class OperationServiceTest {
         UpFilterOperation upFilterOperation = UpFilterOperation.newUpFilterOperationBuilder().build();
 
         Mockito.when(operationFactory.build(upFilterOperation)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), upFilterOperation)).thenReturn(message1);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(upFilterOperation))).thenReturn(message1);
         // When
         message1 = oprServ.applyUpOperations(message1.get(), Collections.singletonList(upFilterOperation));
         // Then
-        Mockito.verify(operationHandler).applyUpOperation(message1.get(), upFilterOperation);
+        Mockito.verify(operationHandler).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(upFilterOperation));
+        verifyReceived(message1.get());
     }
 
     @Test
@@ -144,16 +166,16 @@ public class OperationServiceTest {
         Optional<UpMessage> message3 = Optional.of(UpMessage.newUpMessageBuilder(message1.get()).subType("subType2").build());
         UpFilterOperation upFilterOperation = UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build();
         Mockito.when(operationFactory.build(upFilterOperation)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), upFilterOperation)).thenReturn(message2);
-        Mockito.when(operationHandler.applyUpOperation(message2.get(), upFilterOperation)).thenReturn(message3);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(upFilterOperation))).thenReturn(message2);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message2.get()), Mockito.eq(upFilterOperation))).thenReturn(message3);
 
         // When
         Optional<UpMessage> outputMessage1 = oprServ.applyUpOperations(message1.get(), Collections.nCopies(2, upFilterOperation));
 
         // Then
         Mockito.verify(operationFactory, times(2)).build(upFilterOperation);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message1.get(), upFilterOperation);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message2.get(), upFilterOperation);
+        Mockito.verify(operationHandler, times(2)).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(upFilterOperation));
+        verifyReceived(message1.get(), message2.get());
         assertThat(outputMessage1).isEqualTo(message3);
     }
     @Test
@@ -163,11 +185,12 @@ public class OperationServiceTest {
         UpFilterPointsOperation upFilterPointsOperation = UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(new ArrayList<>()).build();
 
         Mockito.when(operationFactory.build(upFilterPointsOperation)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), upFilterPointsOperation)).thenReturn(message1);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(upFilterPointsOperation))).thenReturn(message1);
         // When
         message1 = oprServ.applyUpOperations(message1.get(), Collections.singletonList(upFilterPointsOperation));
         // Then
-        Mockito.verify(operationHandler).applyUpOperation(message1.get(), upFilterPointsOperation);
+        Mockito.verify(operationHandler).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(upFilterPointsOperation));
+        verifyReceived(message1.get());
     }
     @Test
     public void should_call_points_filter_operation_apply_operation_number_of_times_as_list_size()
@@ -188,16 +211,16 @@ public class OperationServiceTest {
         Optional<UpMessage> message3 = Optional.of(UpMessage.newUpMessageBuilder(message1.get()).points(points3).build());
         UpFilterPointsOperation upFilterPointsOperation = UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(new ArrayList<>()).build();
         Mockito.when(operationFactory.build(upFilterPointsOperation)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), upFilterPointsOperation)).thenReturn(message2);
-        Mockito.when(operationHandler.applyUpOperation(message2.get(), upFilterPointsOperation)).thenReturn(message3);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(upFilterPointsOperation))).thenReturn(message2);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message2.get()), Mockito.eq(upFilterPointsOperation))).thenReturn(message3);
 
         // When
         Optional<UpMessage> outputMessage1 = oprServ.applyUpOperations(message1.get(), Collections.nCopies(2, upFilterPointsOperation));
 
         // Then
         Mockito.verify(operationFactory, times(2)).build(upFilterPointsOperation);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message1.get(), upFilterPointsOperation);
-        Mockito.verify(operationHandler, times(1)).applyUpOperation(message2.get(), upFilterPointsOperation);
+        Mockito.verify(operationHandler, times(2)).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(upFilterPointsOperation));
+        verifyReceived(message1.get(), message2.get());
         assertThat(outputMessage1).isEqualTo(message3);
     }
 
@@ -209,11 +232,12 @@ public class OperationServiceTest {
         UpUpdatePoints jmesPath = UpUpdatePoints.newUpUpdatePointsBuilder().points(points).build();
 
         Mockito.when(operationFactory.build(jmesPath)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyUpOperation(message1.get(), jmesPath)).thenReturn(message1);
+        Mockito.when(operationHandler.applyUpOperation(contextOf(message1.get()), Mockito.eq(jmesPath))).thenReturn(message1);
         // When
         message1 = oprServ.applyUpOperations(message1.get(), Collections.singletonList(jmesPath));
         // Then
-        Mockito.verify(operationHandler).applyUpOperation(message1.get(), jmesPath);
+        Mockito.verify(operationHandler).applyUpOperation(Mockito.any(MessageContext.class), Mockito.eq(jmesPath));
+        verifyReceived(message1.get());
     }
     @Test
     public void should_call_jmespath_update_commands_apply_operation() throws IOException {
@@ -222,10 +246,71 @@ public class OperationServiceTest {
         DownUpdateCommand jmesPath = DownUpdateCommand.newDownUpdateCommandBuilder().commands(new HashMap<>()).build();
 
         Mockito.when(operationFactory.build(jmesPath)).thenReturn(operationHandler);
-        Mockito.when(operationHandler.applyDownOperation(message1.get(), jmesPath)).thenReturn(message1);
+        Mockito.when(operationHandler.applyDownOperation(contextOf(message1.get()), Mockito.eq(jmesPath))).thenReturn(message1);
         // When
         message1 = oprServ.applyDownOperations(message1.get(), Collections.singletonList(jmesPath));
         // Then
-        Mockito.verify(operationHandler).applyDownOperation(message1.get(), jmesPath);
+        Mockito.verify(operationHandler).applyDownOperation(Mockito.any(MessageContext.class), Mockito.eq(jmesPath));
+        verifyReceived(message1.get());
+    }
+
+    @Test
+    public void should_build_handlers_once_when_compiling_up_operations() throws PointExtractionException {
+        // Given
+        Optional<UpMessage> message1 = Optional.of(buildInputUpFilterMessage());
+        Optional<UpMessage> message2 = Optional.of(UpMessage.newUpMessageBuilder(message1.get()).subType("subType1").build());
+        UpFilterOperation upFilterOperation = UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build();
+        Mockito.when(operationFactory.build(upFilterOperation)).thenReturn(operationHandler);
+        Mockito.when(operationHandler.compileUpOperation(upFilterOperation)).thenReturn(context -> Optional.of(context.getMessage()));
+
+        // When
+        MappingPlan<UpMessage> plan = oprServ.compileUpOperations(Collections.singletonList(upFilterOperation));
+        Optional<UpMessage> outputMessage1 = plan.apply(message1.get());
+        Optional<UpMessage> outputMessage2 = plan.apply(message2.get());
+
+        // Then
+        Mockito.verify(operationFactory, times(1)).build(upFilterOperation);
+        Mockito.verify(operationHandler, times(1)).compileUpOperation(upFilterOperation);
+        assertThat(outputMessage1).isEqualTo(message1);
+        assertThat(outputMessage2).isEqualTo(message2);
+    }
+
+    @Test
+    public void should_stop_compiled_plan_when_an_operation_drops_the_message() throws PointExtractionException {
+        // Given
+        Optional<UpMessage> message1 = Optional.of(buildInputUpFilterMessage());
+        UpFilterOperation upFilterOperation = UpFilterOperation.newUpFilterOperationBuilder().build();
+        UpFilterPointsOperation upFilterPointsOperation = UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(new ArrayList<>()).build();
+        OperationHandler filterPointsHandler = Mockito.mock(OperationHandler.class);
+        CompiledOperation<UpMessage> compiledFilterPoints = Mockito.mock(CompiledOperation.class);
+        Mockito.when(operationFactory.build(upFilterOperation)).thenReturn(operationHandler);
+        Mockito.when(operationFactory.build(upFilterPointsOperation)).thenReturn(filterPointsHandler);
+        Mockito.when(operationHandler.compileUpOperation(upFilterOperation)).thenReturn(message -> Optional.empty());
+        Mockito.when(filterPointsHandler.compileUpOperation(upFilterPointsOperation)).thenReturn(compiledFilterPoints);
+
+        // When
+        Optional<UpMessage> outputMessage1 = oprServ
+                .compileUpOperations(Arrays.asList(upFilterOperation, upFilterPointsOperation))
+                .apply(message1.get());
+
+        // Then
+        Mockito.verifyNoInteractions(compiledFilterPoints);
+        assertThat(outputMessage1).isEmpty();
+    }
+
+    @Test
+    public void should_apply_compiled_down_operations() throws IOException {
+        // Given
+        Optional<DownMessage> message1 = Optional.of(buildInputDownMessage());
+        DownUpdateCommand jmesPath = DownUpdateCommand.newDownUpdateCommandBuilder().commands(new HashMap<>()).build();
+        Mockito.when(operationFactory.build(jmesPath)).thenReturn(operationHandler);
+        Mockito.when(operationHandler.compileDownOperation(jmesPath)).thenReturn(context -> Optional.of(context.getMessage()));
+
+        // When
+        Optional<DownMessage> outputMessage1 = oprServ.compileDownOperations(Collections.singletonList(jmesPath)).apply(message1.get());
+
+        // Then
+        Mockito.verify(operationHandler).compileDownOperation(jmesPath);
+        assertThat(outputMessage1).isEqualTo(message1);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.flow.data.*;
+import com.actility.m2m.ontology.mapping.java.lib.data.*;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanOptimizerTest {
+
+    OperationService operationService = new OperationService(new OperationFactory(Collections.emptyList()));
+
+    private UpMessage buildInputUpMessage(UpMessageType type) {
+        ObjectNode message = JsonNodeFactory.instance.objectNode()
+                .put("temperature", 21.5)
+                .put("humidity", 40)
+                .put("battery", 3.6);
+        return UpMessage.newUpMessageBuilder()
+                .id("00000000-000000-00000-000000000")
+                .time(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                .subAccount(Account.newAccountBuilder().id("subAccount1").realmId("subRealm1").build())
+                .origin(
+                        UpOrigin.newUpOriginBuilder().id("tpw").type(UpOriginType.BINDER).time(OffsetDateTime.now()).build())
+                .content(JsonNodeFactory.instance.objectNode())
+                .type(type)
+                .thing(com.actility.m2m.flow.data.Thing.newThingBuilder().key("lora:0102030405060708").build())
+                .subscriber(
+                        com.actility.m2m.flow.data.Subscriber.newSubscriberBuilder().id("sub1").realmId("realm1").build())
+                .packet(MessagePacket.newMessagePacketBuilder().message(message).build())
+                .build();
+    }
+
+    private static JmesPathPoint point(String property) {
+        return JmesPathPoint.newJmesPathPointBuilder()
+                .value("{{packet.message." + property + "}}")
+                .eventTime("{{time}}")
+                .type(JmesPathPointType.DOUBLE)
+                .build();
+    }
+
+    private static UpdatePoint unit(String unitId) {
+        return UpdatePoint.newUpdatePointBuilder().unitId(unitId).build();
+    }
+
+    private static UpExtractPoints extract(String... properties) {
+        Map<String, JmesPathPoint> points = new LinkedHashMap<>();
+        for (String property : properties) {
+            points.put(property, point(property));
+        }
+        return UpExtractPoints.newUpExtractPointsBuilder().points(points).build();
+    }
+
+    @Test
+    public void should_hoist_filter_and_prune_discarded_points() {
+        // Given
+        List<UpOperation> operations = Arrays.asList(
+                extract("temperature", "humidity", "battery"),
+                UpUpdatePoints.newUpUpdatePointsBuilder().points(ImmutableMap.of("battery", unit("V"))).build(),
+                UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build(),
+                UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(Arrays.asList("temperature", "humidity")).build());
+
+        // When
+        MappingPlan<UpMessage> plan = operationService.compileUpOperations(operations);
+
+        // Then
+        assertThat(plan.getExplain()).containsExactly(
+                "1: filter (operation 3, hoisted)",
+                "2: extractPoints [temperature, humidity] (operation 1, 1 discarded points pruned)",
+                "3: updatePoints [] (operation 2, 1 discarded points pruned)",
+                "4: filterPoints [temperature, humidity] (operation 4)");
+        UpMessage uplink = buildInputUpMessage(UpMessageType.DEVICEUPLINK);
+        assertThat(plan.apply(uplink)).isEqualTo(operationService.applyUpOperations(uplink, operations));
+        assertThat(plan.apply(uplink).get().points).containsOnlyKeys("temperature", "humidity");
+        assertThat(plan.apply(buildInputUpMessage(UpMessageType.DEVICELOCATION))).isEmpty();
+    }
+
+    @Test
+    public void should_keep_points_read_by_a_later_extraction() {
+        // Given
+        UpExtractPoints derived = UpExtractPoints.newUpExtractPointsBuilder()
+                .points(ImmutableMap.of("derived", JmesPathPoint.newJmesPathPointBuilder()
+                        .value("{{points.temperature.records[0].value}}")
+                        .eventTime("{{time}}")
+                        .type(JmesPathPointType.DOUBLE)
+                        .build()))
+                .build();
+        List<UpOperation> operations = Arrays.asList(
+                extract("temperature", "humidity"),
+                derived,
+                UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(Collections.singletonList("derived")).build());
+
+        // When
+        MappingPlan<UpMessage> plan = operationService.compileUpOperations(operations);
+
+        // Then
+        assertThat(plan.getExplain()).containsExactly(
+                "1: extractPoints [temperature, humidity] (operation 1)",
+                "2: extractPoints [derived] (operation 2)",
+                "3: filterPoints [derived] (operation 3)");
+        UpMessage uplink = buildInputUpMessage(UpMessageType.DEVICEUPLINK);
+        Optional<UpMessage> result = plan.apply(uplink);
+        assertThat(result).isEqualTo(operationService.applyUpOperations(uplink, operations));
+        assertThat(result.get().points).containsOnlyKeys("derived");
+    }
+
+    @Test
+    public void should_fuse_updates_of_distinct_points_only() {
+        // Given
+        List<UpOperation> operations = Arrays.asList(
+                extract("temperature", "humidity"),
+                UpUpdatePoints.newUpUpdatePointsBuilder().points(ImmutableMap.of("temperature", unit("Cel"))).build(),
+                UpUpdatePoints.newUpUpdatePointsBuilder().points(ImmutableMap.of("humidity", unit("%RH"))).build(),
+                UpUpdatePoints.newUpUpdatePointsBuilder().points(ImmutableMap.of("humidity", unit("%"))).build());
+
+        // When
+        MappingPlan<UpMessage> plan = operationService.compileUpOperations(operations);
+
+        // Then
+        assertThat(plan.getExplain()).containsExactly(
+                "1: extractPoints [temperature, humidity] (operation 1)",
+                "2: updatePoints [temperature, humidity] (operations 2, 3, fused)",
+                "3: updatePoints [humidity] (operation 4)");
+        UpMessage uplink = buildInputUpMessage(UpMessageType.DEVICEUPLINK);
+        Optional<UpMessage> result = plan.apply(uplink);
+        assertThat(result).isEqualTo(operationService.applyUpOperations(uplink, operations));
+        assertThat(result.get().points.get("temperature").unitId).isEqualTo("Cel");
+        assertThat(result.get().points.get("humidity").unitId).isEqualTo("%");
+    }
+
+    @Test
+    public void should_not_rewrite_across_unknown_operations() {
+        // Given
+        UpOperation custom = Mockito.mock(UpOperation.class);
+        OperationHandler customHandler = Mockito.mock(OperationHandler.class);
+        Mockito.when(customHandler.compileUpOperation(custom)).thenReturn(context -> Optional.of(context.getMessage()));
+        OperationHandlerProvider provider = new OperationHandlerProvider() {
+            @Override
+            public Map<Class<? extends UpOperation>, OperationHandler> getUpOperationHandlers() {
+                return Collections.singletonMap(custom.getClass(), customHandler);
+            }
+        };
+        OperationService service = new OperationService(new OperationFactory(Collections.singletonList(provider)));
+        List<UpOperation> operations = Arrays.asList(
+                extract("temperature", "humidity"),
+                custom,
+                UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(Collections.singletonList("humidity")).build(),
+                UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build());
+
+        // When
+        MappingPlan<UpMessage> plan = service.compileUpOperations(operations);
+
+        // Then
+        assertThat(plan.getExplain()).containsExactly(
+                "1: extractPoints [temperature, humidity] (operation 1)",
+                "2: " + PlanOptimizer.describe(custom) + " (operation 2)",
+                "3: filter (operation 4, hoisted)",
+                "4: filterPoints [humidity] (operation 3)");
+    }
+}
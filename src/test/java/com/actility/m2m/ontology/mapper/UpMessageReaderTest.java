@@ -0,0 +1,64 @@
+package com.actility.m2m.ontology.mapper;
+
+import com.actility.m2m.commons.service.mapper.JsonMapper;
+import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
+import com.actility.m2m.flow.data.UpMessage;
+import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPoint;
+import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPointType;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpExtractPoints;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UpMessageReaderTest {
+
+    private static final JsonMapper jsonMapper = new JsonMapper(ObjectMapperModule.createObjectMapper());
+
+    private static final OperationService operationService = new OperationService(new OperationFactory());
+
+    private static final String MESSAGE = "{\"id\":\"00000000-000000-00000-000000000\",\"time\":\"2020-01-01T10:00:00Z\","
+            + "\"content\":{\"payload\":\"0102\",\"nested\":[{\"a\":1},\"\u00e9\",null]},\"type\":\"deviceUplink\","
+            + "\"packet\":{\"message\":{\"temperature\":21.5}}}";
+
+    private static MappingPlan<UpMessage> extract(String template) {
+        JmesPathPoint point = JmesPathPoint.newJmesPathPointBuilder()
+                .value(template)
+                .eventTime("{{time}}")
+                .type(JmesPathPointType.DOUBLE)
+                .build();
+        return operationService.compileUpOperations(Collections.singletonList(
+                UpExtractPoints.newUpExtractPointsBuilder().points(ImmutableMap.of("temperature", point)).build()));
+    }
+
+    @Test
+    public void should_keep_unread_content_as_raw_json() throws IOException {
+        // Given
+        MappingPlan<UpMessage> plan = extract("{{packet.message.temperature}}");
+        UpMessageReader reader = new UpMessageReader(plan);
+        byte[] body = ("  " + MESSAGE + "\n").getBytes(StandardCharsets.UTF_8);
+        //When
+        UpMessage message = reader.read(body, 2, body.length - 3);
+        UpMessage result = plan.apply(message).get();
+        //Then
+        assertThat(reader.isProjected()).isTrue();
+        assertThat(message.content.isPojo()).isTrue();
+        assertThat(jsonMapper.toJsonNode(jsonMapper.toJson(message))).isEqualTo(jsonMapper.toJsonNode(MESSAGE));
+        assertThat(result.points.get("temperature").records.get(0).value.asDouble()).isEqualTo(21.5);
+    }
+
+    @Test
+    public void should_decode_content_read_by_the_plan() throws IOException {
+        // Given
+        UpMessageReader reader = new UpMessageReader(extract("{{length(content.nested)}}"));
+        //When
+        UpMessage message = reader.read(MESSAGE.getBytes(StandardCharsets.UTF_8));
+        //Then
+        assertThat(reader.isProjected()).isFalse();
+        assertThat(message.content.get("nested").size()).isEqualTo(3);
+    }
+}
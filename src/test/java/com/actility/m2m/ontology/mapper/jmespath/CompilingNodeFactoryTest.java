@@ -0,0 +1,130 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPath;
+import io.burt.jmespath.RuntimeConfiguration;
+import io.burt.jmespath.function.FunctionRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class CompilingNodeFactoryTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final JmesPath<JsonNode> compiler = CompilingNodeFactory.createRuntime(
+            new RuntimeConfiguration.Builder()
+                    .withFunctionRegistry(FunctionRegistry.defaultRegistry()
+                            .extend(new ToBooleanFunction(), new DateTimeOpFunction(), new AddPropertyFunction()))
+                    .build());
+
+    private static final String[] EXPRESSIONS = {
+            "time",
+            "packet.message.temperature",
+            "packet.message.measures[0].value",
+            "packet.message.measures[-1]",
+            "packet.message.measures[5]",
+            "packet.message.measures[*].value",
+            "packet.message.measures[*].missing",
+            "packet.message.measures[?id == 'temperature'].value",
+            "packet.message.measures[?id == 'temperature'].value | [0]",
+            "packet.message.measures[?value > `20`].id",
+            "packet.message.measures[?flag].id",
+            "packet.message.matrix[]",
+            "packet.message.matrix[][0]",
+            "packet.message.matrix[*][0]",
+            "packet.message.nested[].values[]",
+            "packet.message.temperature[*]",
+            "packet.message.temperature[]",
+            "packet.message.temperature[?id]",
+            "packet.message.*",
+            "packet.message.measures[1:]",
+            "{t: packet.message.temperature, ids: packet.message.measures[*].id}",
+            "[time, packet.message.temperature]",
+            "length(packet.message.measures)",
+            "max_by(packet.message.measures, &value).id",
+            "to_boolean(packet.message.one)",
+            "to_boolean(packet.message.zero)",
+            "to_boolean(packet.message.temperature)",
+            "to_boolean(time)",
+            "date_time_op(time, '+', `5`, 'm')",
+            "date_time_op(time, '-', '30', 's')",
+            "date_time_op(time, '+', packet.message.temperature, 'ms')",
+            "date_time_op(time, '+', `5`, 'h')",
+            "date_time_op(time, 'add', `5`, 'm')",
+            "date_time_op(packet.message.one, '+', `5`, 'm')",
+            "add_property(packet.message, 'unit', 'Cel')",
+            "add_property(packet.message, 'extra', packet.message.nested[0])",
+            "add_property(packet.message, 'count', `3`)",
+            "add_property(time, 'unit', 'Cel')",
+            "packet.message.measures[?to_boolean(flagValue)].id"};
+
+    private static final String[] DOCUMENTS = {
+            "{\"time\":\"2020-01-01T10:00:00Z\",\"packet\":{\"message\":{\"temperature\":21.5,\"one\":1,\"zero\":0,"
+                    + "\"measures\":[{\"id\":\"temperature\",\"value\":21.5,\"flag\":true,\"flagValue\":1},"
+                    + "{\"id\":\"humidity\",\"value\":40,\"flag\":[],\"flagValue\":0},{\"id\":\"battery\",\"flagValue\":1}],"
+                    + "\"matrix\":[[1,2],[3,4],5,null],\"nested\":[{\"values\":[1,[2]]},{\"values\":3}]}}}",
+            "{\"time\":null,\"packet\":{\"message\":{\"measures\":{\"id\":\"temperature\"},\"matrix\":\"none\"}}}",
+            "{\"packet\":[1,2,3]}",
+            "[{\"time\":1},{\"time\":2}]",
+            "42"};
+
+    @Test
+    public void should_evaluate_like_the_interpreter() throws IOException {
+        for (String document : DOCUMENTS) {
+            JsonNode input = objectMapper.readTree(document);
+            for (String expression : EXPRESSIONS) {
+                // Given
+                Expression<JsonNode> interpreted = JmesPathUtil.jmespath.compile(expression);
+                Expression<JsonNode> compiled = compiler.compile(expression);
+                //When
+                Object expected = evaluate(interpreted, input);
+                Object actual = evaluate(compiled, input);
+                //Then
+                assertThat(actual).as(expression + " on " + document).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void should_build_specialized_nodes() {
+        for (String expression : new String[]{
+                "packet.message.measures[*].value", "to_boolean(packet.message.one)", "packet.message.matrix[]"}) {
+            //When
+            Expression<JsonNode> compiled = compiler.compile(expression);
+            //Then
+            assertThat(compiled.getClass().getName()).as(expression).startsWith(CompilingNodeFactory.class.getName());
+        }
+    }
+
+    @Test
+    public void should_switch_to_the_compiled_expression_after_the_threshold() throws IOException {
+        // Given
+        JsonNode input = objectMapper.readTree(DOCUMENTS[0]);
+        String expression = "packet.message.measures[?id == 'temperature'].value";
+        TieredExpression tiered = new TieredExpression(JmesPathUtil.jmespath.compile(expression), expression, compiler, 3);
+        //When
+        JsonNode first = tiered.search(input);
+        tiered.search(input);
+        boolean compiledBeforeThreshold = tiered.isCompiled();
+        tiered.search(input);
+        JsonNode last = tiered.search(input);
+        //Then
+        assertThat(compiledBeforeThreshold).isFalse();
+        assertThat(tiered.isCompiled()).isTrue();
+        assertThat(last).isEqualTo(first);
+    }
+
+    private static Object evaluate(Expression<JsonNode> expression, JsonNode input) {
+        Throwable error = catchThrowable(() -> expression.search(input));
+        if (error != null) {
+            return error.getClass().getName() + ": " + error.getMessage();
+        }
+        return expression.search(input);
+    }
+}
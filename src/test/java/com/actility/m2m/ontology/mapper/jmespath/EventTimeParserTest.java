@@ -0,0 +1,69 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EventTimeParserTest {
+
+    @Test
+    public void should_parse_rfc3339_shapes_like_offset_date_time() {
+        String[] texts = {
+                "2020-01-01T10:00:00Z",
+                "2020-01-01T10:00:00.000Z",
+                "2020-02-06T09:14:05.688Z",
+                "2020-02-06T09:14:05.1+02:00",
+                "2020-02-06T09:14:05.123456789-05:30",
+                "2020-02-29T23:59:59-00:00"};
+        for (String text : texts) {
+            // When
+            OffsetDateTime fast = EventTimeParser.parseRfc3339(text);
+            //Then
+            assertThat(fast).as(text).isEqualTo(OffsetDateTime.parse(text));
+            assertThat(EventTimeParser.parse(text)).as(text).isEqualTo(OffsetDateTime.parse(text));
+        }
+    }
+
+    @Test
+    public void should_fall_back_on_other_iso_shapes() {
+        String[] texts = {"2020-01-01T10:00+01:00", "2020-01-01t10:00:00z", "2020-01-01T10:00:00.Z"};
+        for (String text : texts) {
+            //When && Then
+            assertThat(EventTimeParser.parseRfc3339(text)).as(text).isNull();
+            assertThat(EventTimeParser.parse(text)).as(text).isEqualTo(OffsetDateTime.parse(text));
+        }
+    }
+
+    @Test
+    public void should_fail_like_offset_date_time() {
+        assertThatThrownBy(() -> EventTimeParser.parse("IoT Rules"))
+                .isInstanceOf(DateTimeParseException.class)
+                .hasMessageContaining("could not be parsed at");
+        assertThatThrownBy(() -> EventTimeParser.parse("2020-13-01T10:00:00Z"))
+                .isInstanceOf(DateTimeParseException.class);
+    }
+
+    @Test
+    public void should_parse_epoch_seconds_and_milliseconds() {
+        // Given
+        OffsetDateTime expected = OffsetDateTime.parse("2020-02-06T09:14:05.688Z");
+        //When && Then
+        assertThat(EventTimeParser.parse(JsonNodeFactory.instance.numberNode(1580980445688L))).isEqualTo(expected);
+        assertThat(EventTimeParser.parse(JsonNodeFactory.instance.numberNode(1580980445L)))
+                .isEqualTo(OffsetDateTime.parse("2020-02-06T09:14:05Z"));
+        assertThat(EventTimeParser.parse(JsonNodeFactory.instance.numberNode(new BigDecimal("1580980445.688"))))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void should_parse_text_nodes() {
+        assertThat(EventTimeParser.parse(JsonNodeFactory.instance.textNode("2020-01-01T10:00:00Z")))
+                .isEqualTo(OffsetDateTime.parse("2020-01-01T10:00:00Z"));
+    }
+}
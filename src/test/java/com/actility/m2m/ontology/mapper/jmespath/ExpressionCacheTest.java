@@ -0,0 +1,67 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.parser.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ExpressionCacheTest {
+
+    @Test
+    public void should_return_same_compiled_expression_for_same_template() {
+        // Given
+        ExpressionCache expressionCache = new ExpressionCache(JmesPathUtil.jmespath, 10);
+        //When
+        Expression<JsonNode> first = expressionCache.get("{{packet.message.temperature}}");
+        Expression<JsonNode> second = expressionCache.get("{{packet.message.temperature}}");
+        //Then
+        assertThat(second).isSameAs(first);
+        assertThat(expressionCache.stats().missCount()).isEqualTo(1);
+        assertThat(expressionCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_analyze_root_fields_once_per_template() {
+        // Given
+        ExpressionCache expressionCache = new ExpressionCache(JmesPathUtil.jmespath, 10);
+        //When
+        Set<String> first = expressionCache.rootFields("{{join(',', [packet.type, time])}}");
+        Set<String> second = expressionCache.rootFields("{{join(',', [packet.type, time])}}");
+        //Then
+        assertThat(first).containsExactlyInAnyOrder("packet", "time");
+        assertThat(second).isSameAs(first);
+        assertThat(expressionCache.rootFields("{{packet.message.temperature}}")).containsExactly("packet");
+        assertThat(expressionCache.rootFields("{{packet.message.[}}")).isEmpty();
+    }
+
+    @Test
+    public void should_cache_compilation_failure() {
+        // Given
+        ExpressionCache expressionCache = new ExpressionCache(JmesPathUtil.jmespath, 10);
+        //When
+        Throwable first = catchThrowable(() -> expressionCache.get("{{packet.message.[}}"));
+        Throwable second = catchThrowable(() -> expressionCache.get("{{packet.message.[}}"));
+        //Then
+        assertThat(first).isInstanceOf(ParseException.class);
+        assertThat(second).isInstanceOf(ParseException.class).isNotSameAs(first).hasMessage(first.getMessage());
+        assertThat(expressionCache.stats().missCount()).isEqualTo(1);
+        assertThat(expressionCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_evict_when_maximum_size_is_reached() {
+        // Given
+        ExpressionCache expressionCache = new ExpressionCache(JmesPathUtil.jmespath, 1);
+        //When
+        expressionCache.get("{{time}}");
+        expressionCache.get("{{packet.message.temperature}}");
+        //Then
+        assertThat(expressionCache.size()).isEqualTo(1);
+        assertThat(expressionCache.stats().evictionCount()).isEqualTo(1);
+    }
+}
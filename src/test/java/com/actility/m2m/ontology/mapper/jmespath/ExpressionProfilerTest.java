@@ -0,0 +1,108 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.burt.jmespath.Expression;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpressionProfilerTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_record_every_evaluation_when_sample_rate_is_one() throws Exception {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(1, 10);
+        ExpressionStats stats = profiler.statsFor("{{values}}", null);
+        Expression<JsonNode> expression = JmesPathUtil.getExpressionCache().get("{{values}}");
+        JsonNode message = objectMapper.readTree("{\"values\":[1,2,3]}");
+        //When
+        profiler.search(stats, expression, message);
+        profiler.search(stats, expression, message);
+        //Then
+        assertThat(stats.getEvaluations()).isEqualTo(2);
+        assertThat(stats.getSamples()).isEqualTo(2);
+        assertThat(stats.getAverageResultSize()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void should_only_count_evaluations_when_sampling_is_disabled() throws Exception {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(0, 10);
+        ExpressionStats stats = profiler.statsFor("{{time}}", null);
+        Expression<JsonNode> expression = JmesPathUtil.getExpressionCache().get("{{time}}");
+        //When
+        JsonNode result = profiler.search(stats, expression, objectMapper.readTree("{\"time\":\"now\"}"));
+        //Then
+        assertThat(result.asText()).isEqualTo("now");
+        assertThat(stats.getEvaluations()).isZero();
+        assertThat(stats.getSamples()).isZero();
+    }
+
+    @Test
+    public void should_count_every_template_of_a_walk_and_split_its_samples() throws Exception {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(1, 10);
+        ExpressionStats time = profiler.statsFor("{{time}}", null);
+        ExpressionStats values = profiler.statsFor("{{values}}", null);
+        JsonNode message = objectMapper.readTree("{\"time\":\"now\",\"values\":[1,2,3]}");
+        //When
+        JsonNode[] results = profiler.searchAll(
+                new ExpressionStats[] {time, values},
+                node -> new JsonNode[] {node.get("time"), node.get("values")},
+                message);
+        //Then
+        assertThat(results[0].asText()).isEqualTo("now");
+        assertThat(time.getEvaluations()).isEqualTo(1);
+        assertThat(time.getSamples()).isEqualTo(1);
+        assertThat(time.getAverageResultSize()).isEqualTo(1.0);
+        assertThat(values.getEvaluations()).isEqualTo(1);
+        assertThat(values.getAverageResultSize()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void should_attribute_usage_to_compiling_profile() {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(1, 10);
+        //When
+        ExpressionStats stats = ExpressionProfiler.compilingProfile(
+                "adeunis", () -> profiler.statsFor("{{packet.message.temperature}}", "temperature"));
+        profiler.statsFor("{{packet.message.temperature}}", "temperature");
+        //Then
+        assertThat(stats.getUsages()).containsExactly("adeunis/temperature", "temperature");
+    }
+
+    @Test
+    public void should_stop_tracking_beyond_maximum_expressions() {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(1, 1);
+        profiler.statsFor("{{time}}", null);
+        //When
+        ExpressionStats stats = profiler.statsFor("{{packet}}", null);
+        //Then
+        assertThat(stats).isNull();
+        assertThat(profiler.statsFor("{{time}}", null)).isNotNull();
+    }
+
+    @Test
+    public void should_return_most_expensive_expressions_first() throws Exception {
+        // Given
+        ExpressionProfiler profiler = new ExpressionProfiler(1, 10);
+        ExpressionStats rare = profiler.statsFor("{{time}}", null);
+        ExpressionStats frequent = profiler.statsFor("{{values[?@ > `0`]}}", null);
+        JsonNode message = objectMapper.readTree("{\"time\":\"now\",\"values\":[1,2,3]}");
+        Expression<JsonNode> frequentExpression = JmesPathUtil.getExpressionCache().get("{{values[?@ > `0`]}}");
+        profiler.search(rare, JmesPathUtil.getExpressionCache().get("{{time}}"), message);
+        for (int i = 0; i < 1000; i++) {
+            profiler.search(frequent, frequentExpression, message);
+        }
+        //When
+        List<ExpressionStats> top = profiler.top(1);
+        //Then
+        assertThat(top).containsExactly(frequent);
+    }
+}
@@ -0,0 +1,102 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.actility.m2m.flow.data.Record;
+import com.actility.m2m.ontology.mapper.PointExtractionException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JmesPathUtilTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_build_one_record_per_array_element() throws IOException {
+        // Given
+        PointParams params = PointParams.newPointParamsBuilder()
+                .values(json("[{\"a\":1},{\"a\":2}]"))
+                .eventTime(json("[\"2020-01-01T00:00:00Z\",\"2020-01-01T00:01:00Z\"]"))
+                .longitude(json("[1.5,2.5]"))
+                .latitude(json("[3.5,4.5]"))
+                .isValue(true)
+                .isCoordinate(true)
+                .build();
+        //When
+        Optional<List<Record>> records = JmesPathUtil.extractRecords(params, "location");
+        //Then
+        assertThat(records).isPresent();
+        assertThat(records.get()).hasSize(2);
+        assertThat(records.get().get(1).eventTime).isEqualTo(OffsetDateTime.parse("2020-01-01T00:01:00Z"));
+        assertThat(records.get().get(1).value).isEqualTo(json("{\"a\":2}"));
+        assertThat(records.get().get(1).coordinates).isEqualTo(Arrays.asList(2.5, 4.5));
+    }
+
+    @Test
+    public void should_copy_container_values_and_share_scalars() throws IOException {
+        // Given
+        JsonNode values = json("[{\"a\":1},21.5]");
+        PointParams params = PointParams.newPointParamsBuilder()
+                .values(values)
+                .eventTime(json("[\"2020-01-01T00:00:00Z\",\"2020-01-01T00:01:00Z\"]"))
+                .isValue(true)
+                .build();
+        //When
+        Optional<List<Record>> records = JmesPathUtil.extractRecords(params, "temperature");
+        //Then
+        assertThat(records).isPresent();
+        assertThat(records.get().get(0).value).isEqualTo(values.get(0)).isNotSameAs(values.get(0));
+        assertThat(records.get().get(1).value).isSameAs(values.get(1));
+    }
+
+    @Test
+    public void should_build_single_record_from_value_nodes() throws IOException {
+        // Given
+        PointParams params = PointParams.newPointParamsBuilder()
+                .values(json("21.5"))
+                .eventTime(json("\"2020-01-01T00:00:00Z\""))
+                .isValue(true)
+                .build();
+        //When
+        Optional<List<Record>> records = JmesPathUtil.extractRecords(params, "temperature");
+        //Then
+        assertThat(records).isPresent();
+        assertThat(records.get()).hasSize(1);
+        assertThat(records.get().get(0).value.asDouble()).isEqualTo(21.5);
+        assertThat(records.get().get(0).coordinates).isNull();
+    }
+
+    @Test
+    public void should_reject_value_and_event_time_cardinality_mismatch() throws IOException {
+        // Given
+        PointParams params = PointParams.newPointParamsBuilder()
+                .values(json("[1,2,3]"))
+                .eventTime(json("[\"2020-01-01T00:00:00Z\",\"2020-01-01T00:01:00Z\"]"))
+                .isValue(true)
+                .build();
+        //When && Then
+        assertThatThrownBy(() -> JmesPathUtil.extractRecords(params, "temperature"))
+                .isInstanceOf(PointExtractionException.class)
+                .hasMessage("there is a mismatch in cardinality for 'value' and 'eventTime'");
+    }
+
+    @Test
+    public void should_return_empty_without_values_nor_coordinates() {
+        // Given
+        PointParams params = PointParams.newPointParamsBuilder().isValue(true).build();
+        //When && Then
+        assertThat(JmesPathUtil.extractRecords(params, "temperature")).isEmpty();
+    }
+
+    private static JsonNode json(String content) throws IOException {
+        return objectMapper.readTree(content);
+    }
+}
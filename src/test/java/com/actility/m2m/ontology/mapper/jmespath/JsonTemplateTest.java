@@ -0,0 +1,105 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.actility.m2m.ontology.mapper.MessageExtractionException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonTemplateTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_render_expressions_and_share_constant_subtrees() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileMessage(objectMapper.readTree(
+                "{\"port\":2,\"header\":{\"version\":1},\"payload\":{\"value\":\"{{command.input.value}}\"}}"));
+        JsonNode message = objectMapper.readTree("{\"command\":{\"input\":{\"value\":42}}}");
+        //When
+        JsonNode first = template.render(message);
+        JsonNode second = template.render(message);
+        //Then
+        assertThat(first).isEqualTo(objectMapper.readTree(
+                "{\"port\":2,\"header\":{\"version\":1},\"payload\":{\"value\":42}}"));
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+        assertThat(second.get("header")).isSameAs(first.get("header"));
+    }
+
+    @Test
+    public void should_render_a_fresh_root_for_constant_templates() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileMessage(objectMapper.readTree(
+                "{\"port\":2,\"header\":{\"version\":1}}"));
+        JsonNode message = objectMapper.createObjectNode();
+        //When
+        ObjectNode first = (ObjectNode) template.render(message);
+        first.put("port", 3);
+        first.remove("header");
+        ((ObjectNode) first.with("payload")).put("value", 42);
+        JsonNode second = template.render(message);
+        //Then
+        assertThat(second).isEqualTo(objectMapper.readTree("{\"port\":2,\"header\":{\"version\":1}}"));
+    }
+
+    @Test
+    public void should_render_a_fresh_root_for_templates_with_expressions() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileMessage(objectMapper.readTree(
+                "{\"port\":2,\"value\":\"{{command.input.value}}\"}"));
+        JsonNode message = objectMapper.readTree("{\"command\":{\"input\":{\"value\":42}}}");
+        //When
+        ObjectNode first = (ObjectNode) template.render(message);
+        first.put("port", 3);
+        JsonNode second = template.render(message);
+        //Then
+        assertThat(second).isEqualTo(objectMapper.readTree("{\"port\":2,\"value\":42}"));
+    }
+
+    @Test
+    public void should_render_a_copy_of_the_object_selected_by_the_expression() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileMessage(objectMapper.readTree("\"{{packet.message}}\""));
+        JsonNode message = objectMapper.readTree("{\"packet\":{\"message\":{\"port\":2}}}");
+        //When
+        ObjectNode rendered = (ObjectNode) template.render(message);
+        rendered.put("port", 3);
+        //Then
+        assertThat(message.get("packet").get("message")).isEqualTo(objectMapper.readTree("{\"port\":2}"));
+    }
+
+    @Test
+    public void should_fail_when_message_expression_is_not_an_object() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileMessage(objectMapper.readTree("\"{{command.id}}\""));
+        JsonNode message = objectMapper.readTree("{\"command\":{\"id\":\"reboot\"}}");
+        //When && Then
+        assertThatThrownBy(() -> template.render(message))
+                .isInstanceOf(MessageExtractionException.class)
+                .hasMessage("expected object for 'message' but returned value node or null");
+    }
+
+    @Test
+    public void should_return_constant_command_input() throws IOException {
+        // Given
+        JsonNode constant = objectMapper.readTree("12");
+        JsonTemplate template = JsonTemplate.compileCommands(constant);
+        //When && Then
+        assertThat(template.render(objectMapper.createObjectNode())).isSameAs(constant);
+    }
+
+    @Test
+    public void should_fail_when_command_expression_yields_nothing() throws IOException {
+        // Given
+        JsonTemplate template = JsonTemplate.compileCommands(objectMapper.readTree("\"{{input.missing}}\""));
+        //When && Then
+        assertThatThrownBy(() -> template.render(objectMapper.createObjectNode()))
+                .isInstanceOf(MessageExtractionException.class)
+                .hasMessage("retrieved value is null");
+    }
+}
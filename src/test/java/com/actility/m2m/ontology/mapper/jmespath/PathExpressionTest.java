@@ -0,0 +1,83 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PathExpressionTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_evaluate_paths_like_the_runtime() throws IOException {
+        // Given
+        JsonNode message = objectMapper.readTree(
+                "{\"time\":\"2020-01-01T10:00:00Z\",\"packet\":{\"message\":{\"temperature\":21.5,\"humidity\":null,"
+                        + "\"measures\":[{\"value\":1},{\"value\":2}],\"matrix\":[[1,2],[3,4]],\"_flag2\":true}}}");
+        String[] expressions = {
+                "time",
+                " packet.message.temperature ",
+                "packet.message.humidity",
+                "packet.message.missing.value",
+                "packet.message.measures[0].value",
+                "packet.message.measures[-1].value",
+                "packet.message.measures[2].value",
+                "packet.message.measures[-3]",
+                "packet.message.matrix[1][0]",
+                "packet.message.temperature[0]",
+                "packet.message.measures.value",
+                "packet.message._flag2",
+                "time.length"};
+
+        for (String expression : expressions) {
+            //When
+            PathExpression path = PathExpression.parse(expression);
+            //Then
+            assertThat(path).as(expression).isNotNull();
+            assertThat(path.search(message)).as(expression)
+                    .isEqualTo(JmesPathUtil.jmespath.compile(expression).search(message));
+        }
+        assertThat(PathExpression.parse("[1][0]").search(message.at("/packet/message/matrix")).intValue()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_leave_other_expressions_to_the_runtime() {
+        // Given
+        String[] expressions = {
+                "",
+                "packet.",
+                ".packet",
+                "packet..message",
+                "packet.[0]",
+                "packet[]",
+                "packet[*].value",
+                "packet[0:1]",
+                "packet[-]",
+                "packet[0]value",
+                "packet[12345678901]",
+                "packet.message | [0]",
+                "packet.message.measures[?value == `1`]",
+                "length(packet)",
+                "@",
+                "`1`",
+                "1abc"};
+
+        for (String expression : expressions) {
+            //When
+            PathExpression path = PathExpression.parse(expression);
+            //Then
+            assertThat(path).as(expression).isNull();
+        }
+    }
+
+    @Test
+    public void should_expose_property_paths_without_indexes() {
+        assertThat(PathExpression.parse("packet.message.temperature").propertyPath())
+                .containsExactly("packet", "message", "temperature");
+        assertThat(PathExpression.parse("packet.message.measures[0].value").propertyPath()).isNull();
+    }
+}
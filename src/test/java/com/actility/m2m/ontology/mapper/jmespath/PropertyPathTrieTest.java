@@ -0,0 +1,64 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropertyPathTrieTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_resolve_paths_like_their_templates() throws IOException {
+        // Given
+        JsonNode message = objectMapper.readTree(
+                "{\"time\":\"2020-01-01T10:00:00Z\",\"packet\":{\"message\":{\"temperature\":21.5,\"humidity\":null,"
+                        + "\"values\":[1,2]}}}");
+        String[] templates = {
+                "{{packet.message.temperature}}",
+                "{{ packet.message.humidity }}",
+                "{{packet.message.values}}",
+                "{{packet.message.values.first}}",
+                "{{packet.missing.temperature}}",
+                "{{time}}"};
+        PropertyPathTrie trie = new PropertyPathTrie();
+        int[] slots = new int[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            slots[i] = trie.add(JmesPathTemplate.compile(templates[i]));
+        }
+        //When
+        JsonNode[] values = trie.evaluate(message);
+        //Then
+        for (int i = 0; i < templates.length; i++) {
+            assertThat(slots[i]).as(templates[i]).isNotNegative();
+            assertThat(values[slots[i]]).as(templates[i]).isEqualTo(JmesPathUtil.retrieveValues(message, templates[i]));
+        }
+    }
+
+    @Test
+    public void should_share_slot_of_identical_paths() {
+        // Given
+        PropertyPathTrie trie = new PropertyPathTrie();
+        //When
+        int first = trie.add(JmesPathTemplate.compile("{{time}}"));
+        int second = trie.add(JmesPathTemplate.compile("{{ time }}"));
+        //Then
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void should_not_add_other_expressions() {
+        // Given
+        PropertyPathTrie trie = new PropertyPathTrie();
+        //When && Then
+        assertThat(trie.add(JmesPathTemplate.compile("{{packet.message.values[0]}}"))).isNegative();
+        assertThat(trie.add(JmesPathTemplate.compile("{{packet.message.a || packet.message.b}}"))).isNegative();
+        assertThat(trie.add(JmesPathTemplate.compile("temperature"))).isNegative();
+        assertThat(trie.add(null)).isNegative();
+        assertThat(trie.evaluate(objectMapper.createObjectNode())).isEmpty();
+    }
+}
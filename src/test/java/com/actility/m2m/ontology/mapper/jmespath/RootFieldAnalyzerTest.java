@@ -0,0 +1,46 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RootFieldAnalyzerTest {
+
+    @Test
+    public void should_collect_the_root_fields_read() {
+        assertThat(RootFieldAnalyzer.rootFields("packet.message.measures[?id == 'temperature'].value | [0]"))
+                .containsExactly("packet");
+        assertThat(RootFieldAnalyzer.rootFields("date_time_op(time, '+', packet.message.delay, 'm')"))
+                .containsExactlyInAnyOrder("time", "packet");
+        assertThat(RootFieldAnalyzer.rootFields("max_by(packet.message.measures, &time).id"))
+                .containsExactly("packet");
+        assertThat(RootFieldAnalyzer.rootFields("[time, packet.message.temperature][0]"))
+                .containsExactlyInAnyOrder("time", "packet");
+        assertThat(RootFieldAnalyzer.rootFields("subType == 'test' && packet.message.value"))
+                .containsExactlyInAnyOrder("subType", "packet");
+        assertThat(RootFieldAnalyzer.rootFields("@.packet.message")).containsExactly("packet");
+        assertThat(RootFieldAnalyzer.rootFields("packet.message.measures[?id == @]")).containsExactly("packet");
+        assertThat(RootFieldAnalyzer.rootFields("`42`")).isEmpty();
+    }
+
+    @Test
+    public void should_require_the_whole_message_when_the_root_escapes() {
+        String[] expressions = {
+                "@",
+                "*.message",
+                "keys(@)",
+                "packet || @",
+                "{t: time}",
+                "@ == `{}`",
+                "@ == packet",
+                "packet != @",
+                "!@",
+                "!(@ || packet)",
+                "[@][0].content",
+                "not valid ("};
+
+        for (String expression : expressions) {
+            assertThat(RootFieldAnalyzer.rootFields(expression)).as(expression).isNull();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.actility.m2m.ontology.mapper.jmespath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedTemplatesTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void should_evaluate_identical_templates_once() throws IOException {
+        // Given
+        JsonNode message = objectMapper.readTree(
+                "{\"time\":\"2020-01-01T10:00:00Z\",\"packet\":{\"message\":{\"gps\":[{\"lat\":45.1,\"lng\":5.7}]}}}");
+        String expression = "{{add_property(packet.message.gps[0], 'unit', 'deg')}}";
+        SharedTemplates templates = new SharedTemplates();
+        int first = templates.add(JmesPathTemplate.compile(expression, "latitude"));
+        int second = templates.add(JmesPathTemplate.compile(expression, "longitude"));
+        int time = templates.add(JmesPathTemplate.compile("{{time}}", "latitude"));
+        //When
+        SharedTemplates.Values values = templates.evaluate(message);
+        //Then
+        assertThat(second).isEqualTo(first);
+        assertThat(templates.size()).isEqualTo(2);
+        assertThat(values.get(first)).isEqualTo(JmesPathUtil.retrieveValues(message, expression));
+        assertThat(values.get(second)).isSameAs(values.get(first));
+        assertThat(values.get(time).asText()).isEqualTo("2020-01-01T10:00:00Z");
+    }
+
+    @Test
+    public void should_count_property_paths_resolved_by_the_trie() throws IOException {
+        // Given
+        JsonNode message = objectMapper.readTree("{\"packet\":{\"message\":{\"sharedCount\":7}}}");
+        String expression = "{{packet.message.sharedCount}}";
+        SharedTemplates templates = new SharedTemplates();
+        int slot = templates.add(JmesPathTemplate.compile(expression, "count"));
+        ExpressionStats stats = JmesPathUtil.getExpressionProfiler().statsFor(expression, null);
+        long evaluations = stats.getEvaluations();
+        //When
+        templates.evaluate(message).get(slot);
+        templates.evaluate(message).get(slot);
+        //Then
+        assertThat(stats.getEvaluations()).isEqualTo(evaluations + 2);
+    }
+
+    @Test
+    public void should_ignore_templates_without_expression() {
+        // Given
+        SharedTemplates templates = new SharedTemplates();
+        //When
+        int constant = templates.add(JmesPathTemplate.compile("21.5"));
+        int missing = templates.add(null);
+        //Then
+        assertThat(constant).isEqualTo(-1);
+        assertThat(missing).isEqualTo(-1);
+        assertThat(templates.size()).isZero();
+    }
+
+    @Test
+    public void should_keep_null_results() throws IOException {
+        // Given
+        JsonNode message = objectMapper.readTree("{\"packet\":{\"message\":{}}}");
+        SharedTemplates templates = new SharedTemplates();
+        int slot = templates.add(JmesPathTemplate.compile("{{packet.message.values[0]}}"));
+        //When
+        SharedTemplates.Values values = templates.evaluate(message);
+        //Then
+        assertThat(values.get(slot)).isNull();
+        assertThat(values.get(slot)).isNull();
+    }
+}
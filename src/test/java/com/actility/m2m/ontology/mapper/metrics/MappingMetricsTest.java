@@ -0,0 +1,96 @@
+package com.actility.m2m.ontology.mapper.metrics;
+
+import com.actility.m2m.flow.data.*;
+import com.actility.m2m.flow.data.Record;
+import com.actility.m2m.ontology.mapper.MappingPlan;
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapper.PointExtractionException;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappingMetricsTest {
+
+    MappingMetrics metrics;
+    OperationService operationService;
+
+    @BeforeEach
+    public void setup() {
+        metrics = new MappingMetrics();
+        operationService = new OperationService(new OperationFactory(), metrics);
+    }
+
+    private UpMessage buildUpMessage() {
+        Record record = Record.newRecordBuilder()
+                .eventTime(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                .value(JsonNodeFactory.instance.numberNode(20))
+                .build();
+        return UpMessage.newUpMessageBuilder()
+                .id("00000000-000000-00000-000000000")
+                .time(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                .type(UpMessageType.DEVICEUPLINK)
+                .content(JsonNodeFactory.instance.objectNode())
+                .points(Collections.singletonMap(
+                        "temperature",
+                        Point.newPointBuilder().records(Arrays.asList(record, record)).build()))
+                .build();
+    }
+
+    @Test
+    public void should_record_operation_latency_and_produced_points() {
+        // Given
+        List<UpOperation> operations =
+                Collections.singletonList(UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build());
+        MappingPlan<UpMessage> plan = operationService.compileUpOperations(operations);
+        //When
+        plan.apply(buildUpMessage());
+        operationService.applyUpOperations(buildUpMessage(), operations);
+        //Then
+        OperationMetrics filterMetrics = metrics.operation(UpFilterOperation.class);
+        assertThat(filterMetrics.getLatency().snapshot().getTotalCount()).isEqualTo(2);
+        assertThat(filterMetrics.getDropped()).isZero();
+        assertThat(metrics.getPointsProduced()).isEqualTo(2);
+        assertThat(metrics.getRecordsProduced()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_count_dropped_messages_and_failures() {
+        // Given
+        List<UpOperation> operations =
+                Collections.singletonList(UpFilterOperation.newUpFilterOperationBuilder().build());
+        //When
+        operationService.applyUpOperations(buildUpMessage(), operations);
+        metrics.recordFailure(new PointExtractionException("invalid", "temperature"));
+        //Then
+        assertThat(metrics.operation(UpFilterOperation.class).getDropped()).isEqualTo(1);
+        assertThat(metrics.getPointsProduced()).isZero();
+        assertThat(metrics.getPointExtractionFailures()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_write_prometheus_text() {
+        // Given
+        metrics.operation(UpFilterOperation.class).record(System.nanoTime(), true);
+        metrics.route("applyOperations").record(1_000_000L);
+        StringBuilder out = new StringBuilder();
+        //When
+        metrics.writePrometheus(out);
+        //Then
+        assertThat(out.toString())
+                .contains("# TYPE ontology_mapping_operation_latency_seconds summary\n")
+                .contains("ontology_mapping_operation_latency_seconds_count{operation=\"UpFilterOperation\"} 1\n")
+                .contains("ontology_mapping_route_latency_seconds_count{route=\"applyOperations\"} 1\n")
+                .contains("ontology_mapping_messages_dropped_total{operation=\"UpFilterOperation\"} 1\n")
+                .contains("ontology_mapping_failures_total{exception=\"PointExtractionException\"} 0\n");
+    }
+}
@@ -0,0 +1,82 @@
+package com.actility.m2m.ontology.mapper.operations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CommandRouterTest {
+
+    @Test
+    public void should_route_to_first_command_containing_id() {
+        // Given
+        Map<String, String> commands = new LinkedHashMap<>();
+        commands.put("setTemperature", "first");
+        commands.put("setTemperatureThreshold", "second");
+        commands.put("reboot", "third");
+        commands.put("default", "fallback");
+        CommandRouter<String> router = CommandRouter.contains(commands);
+        //When && Then
+        assertThat(router.route("Threshold")).isEqualTo("second");
+        assertThat(router.route("Temperature")).isEqualTo("first");
+        assertThat(router.route("boo")).isEqualTo("third");
+        assertThat(router.route("")).isEqualTo("first");
+        assertThat(router.route("def")).isEqualTo("fallback");
+        assertThat(router.route("unknown")).isEqualTo("fallback");
+        assertThat(router.route("reboot")).isEqualTo("third");
+    }
+
+    @Test
+    public void should_scan_names_beyond_the_trie_size() {
+        // Given
+        Map<String, String> commands = new LinkedHashMap<>();
+        int length = 64;
+        int count = 2 * CommandRouter.MAXIMUM_TRIE_SIZE / (length * (length + 1) / 2);
+        for (int i = 0; i < count; i++) {
+            commands.put(pad("command-" + i + "-shared", length), "entry-" + i);
+        }
+        commands.put("default", "fallback");
+        CommandRouter<String> router = CommandRouter.contains(commands);
+        //When && Then
+        assertThat(router.route("command-0-")).isEqualTo("entry-0");
+        assertThat(router.route("command-" + (count - 1) + "-")).isEqualTo("entry-" + (count - 1));
+        assertThat(router.route("shared")).isEqualTo("entry-0");
+        assertThat(router.route("default")).isEqualTo("fallback");
+        assertThat(router.route("unknown")).isEqualTo("fallback");
+    }
+
+    private static String pad(String name, int length) {
+        StringBuilder padded = new StringBuilder(name);
+        while (padded.length() < length) {
+            padded.append('.');
+        }
+        return padded.toString();
+    }
+
+    @Test
+    public void should_route_ignoring_case() {
+        // Given
+        Map<String, String> commands = new LinkedHashMap<>();
+        commands.put("Reboot", "first");
+        commands.put("REBOOT", "second");
+        commands.put("default", "fallback");
+        CommandRouter<String> router = CommandRouter.equalsIgnoreCase(commands);
+        //When && Then
+        assertThat(router.route("reboot")).isEqualTo("first");
+        assertThat(router.route("reboo")).isEqualTo("fallback");
+        assertThat(router.route("DEFAULT")).isEqualTo("fallback");
+    }
+
+    @Test
+    public void should_return_null_without_match_nor_default() {
+        // Given
+        Map<String, String> commands = new LinkedHashMap<>();
+        commands.put("reboot", "first");
+        //When && Then
+        assertThat(CommandRouter.contains(commands).route("reset")).isNull();
+        assertThat(CommandRouter.equalsIgnoreCase(commands).route("reset")).isNull();
+        assertThat(CommandRouter.contains(commands).getDefault()).isNull();
+    }
+}
@@ -212,4 +212,43 @@ public class FilterPointsOperationTest {
 
         assertThat(outputUpMessage).hasValue(expectedOutputMessage);
     }
+
+    @Test
+    public void should_return_same_message_when_every_point_is_kept() throws PointExtractionException, IOException {
+        // Given
+        Map<String, Point> inputPoints = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            inputPoints.put("point" + i, Point.newPointBuilder().records(new ArrayList<>()).build());
+        }
+        UpMessage inputUpMessage = buildInputUpMessage(inputPoints);
+        List<String> points = new ArrayList<>(inputPoints.keySet());
+        points.add("humidity");
+        UpFilterPointsOperation upFilterPoints = UpFilterPointsOperation.newUpFilterPointsOperationBuilder().points(points).build();
+
+        // When
+        Optional<UpMessage> outputUpMessage = filterPointsOperation.applyUpOperation(inputUpMessage, upFilterPoints);
+
+        // Then
+        assertThat(outputUpMessage).containsSame(inputUpMessage);
+    }
+
+    @Test
+    public void should_look_up_kept_points_when_filter_is_smaller_than_message_points() throws PointExtractionException, IOException {
+        // Given
+        Map<String, Point> inputPoints = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            inputPoints.put("point" + i, Point.newPointBuilder().records(new ArrayList<>()).build());
+        }
+        UpMessage inputUpMessage = buildInputUpMessage(inputPoints);
+        UpFilterPointsOperation upFilterPoints = UpFilterPointsOperation.newUpFilterPointsOperationBuilder()
+                .points(Arrays.asList("point7", "point42", "humidity"))
+                .build();
+
+        // When
+        Optional<UpMessage> outputUpMessage = filterPointsOperation.applyUpOperation(inputUpMessage, upFilterPoints);
+
+        // Then
+        assertThat(outputUpMessage.get().points).containsOnlyKeys("point7", "point42");
+        assertThat(outputUpMessage.get().points.get("point7")).isSameAs(inputPoints.get("point7"));
+    }
 }
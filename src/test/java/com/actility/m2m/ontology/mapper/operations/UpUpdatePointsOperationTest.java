@@ -4,6 +4,8 @@ import com.actility.m2m.commons.service.mapper.JsonMapper;
 import com.actility.m2m.commons.service.mapper.ObjectMapperModule;
 import com.actility.m2m.flow.data.*;
 import com.actility.m2m.flow.data.Record;
+import com.actility.m2m.ontology.mapper.CompiledOperation;
+import com.actility.m2m.ontology.mapper.MessageContext;
 import com.actility.m2m.ontology.mapper.PointExtractionException;
 import com.actility.m2m.ontology.mapping.java.lib.data.JmesPathPointType;
 import com.actility.m2m.ontology.mapping.java.lib.data.UpdatePoint;
@@ -410,4 +412,39 @@ public class UpUpdatePointsOperationTest {
 
         assertThat(outputMessage).isEqualTo(expectedOutputMessage);
     }
+
+    @Test
+    public void should_update_every_record_with_constant_value_and_reuse_compiled_operation() throws IOException {
+        // Given
+        List<Record> inputRecords = Arrays.asList(
+                Record.newRecordBuilder()
+                        .eventTime(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                        .value(jsonMapper.toJsonNode(22.6))
+                        .build(),
+                Record.newRecordBuilder()
+                        .eventTime(OffsetDateTime.parse("2020-01-01T10:01:00.000Z"))
+                        .value(jsonMapper.toJsonNode(22.7))
+                        .build());
+        UpMessage inputUpMessage = buildInputUpMessage(
+                newHashMap("temperature", Point.newPointBuilder().records(new ArrayList<>(inputRecords)).build()));
+        UpdatePoint temperature = UpdatePoint.newUpdatePointBuilder().value("true").build();
+        UpUpdatePoints jmesPath = UpUpdatePoints.newUpUpdatePointsBuilder().points(newHashMap("temperature", temperature)).build();
+        CompiledOperation<UpMessage> compiled = jmesPathOperation.compileUpOperation(jmesPath);
+        // When
+        Optional<UpMessage> first = compiled.apply(MessageContext.of(inputUpMessage));
+        Optional<UpMessage> second = compiled.apply(MessageContext.of(inputUpMessage));
+        // Then
+        List<Record> expectedRecords = Arrays.asList(
+                Record.newRecordBuilder()
+                        .eventTime(OffsetDateTime.parse("2020-01-01T10:00:00.000Z"))
+                        .value(JsonNodeFactory.instance.booleanNode(true))
+                        .build(),
+                Record.newRecordBuilder()
+                        .eventTime(OffsetDateTime.parse("2020-01-01T10:01:00.000Z"))
+                        .value(JsonNodeFactory.instance.booleanNode(true))
+                        .build());
+        assertThat(first).isPresent();
+        assertThat(first.get().points.get("temperature").records).isEqualTo(expectedRecords);
+        assertThat(second).isEqualTo(first);
+    }
 }
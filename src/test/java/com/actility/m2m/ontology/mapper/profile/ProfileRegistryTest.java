@@ -0,0 +1,124 @@
+package com.actility.m2m.ontology.mapper.profile;
+
+import com.actility.m2m.ontology.mapper.OperationFactory;
+import com.actility.m2m.ontology.mapper.OperationService;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpFilterOperation;
+import com.actility.m2m.ontology.mapping.java.lib.data.UpOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class ProfileRegistryTest {
+
+    OperationService operationService;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setup() {
+        operationService = new OperationService(new OperationFactory());
+    }
+
+    private static List<UpOperation> filterOperations() {
+        return Collections.singletonList(UpFilterOperation.newUpFilterOperationBuilder().keepDeviceUplink(true).build());
+    }
+
+    @Test
+    public void should_increment_version_when_profile_is_replaced() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, null);
+        //When
+        MappingProfile first = profileRegistry.put("adeunis-arf8230", filterOperations(), null);
+        MappingProfile second = profileRegistry.put("adeunis-arf8230", filterOperations(), null);
+        //Then
+        assertThat(first.version).isEqualTo(1L);
+        assertThat(second.version).isEqualTo(2L);
+        assertThat(profileRegistry.get("adeunis-arf8230")).containsSame(second);
+        assertThat(profileRegistry.getUpPlan("adeunis-arf8230").getOperations()).hasSize(1);
+        assertThat(profileRegistry.getDownPlan("adeunis-arf8230").getOperations()).isEmpty();
+    }
+
+    @Test
+    public void should_reload_persisted_profiles() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, directory);
+        profileRegistry.put("adeunis-arf8230", filterOperations(), null);
+        profileRegistry.put("nke", filterOperations(), null);
+        profileRegistry.delete("nke");
+        //When
+        ProfileRegistry reloaded = new ProfileRegistry(operationService, directory);
+        //Then
+        assertThat(reloaded.list()).extracting(profile -> profile.id).containsExactly("adeunis-arf8230");
+        assertThat(reloaded.get("adeunis-arf8230").get().operations).hasSize(1);
+        assertThat(reloaded.getUpPlan("adeunis-arf8230").getOperations()).hasSize(1);
+        assertThat(Files.exists(directory.resolve("nke.json"))).isFalse();
+    }
+
+    @Test
+    public void should_reload_profile_execution_mode() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, directory);
+        profileRegistry.put("abeeway", filterOperations(), null, ExecutionMode.WORKER);
+        profileRegistry.put("nke", filterOperations(), null);
+        //When
+        ProfileRegistry reloaded = new ProfileRegistry(operationService, directory);
+        //Then
+        assertThat(reloaded.get("abeeway").get().executionMode).isEqualTo(ExecutionMode.WORKER);
+        assertThat(reloaded.get("nke").get().executionMode).isNull();
+    }
+
+    @Test
+    public void should_fail_when_profile_does_not_exist() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, null);
+        //When && Then
+        assertThatThrownBy(() -> profileRegistry.getUpPlan("unknown")).isInstanceOf(ProfileNotFoundException.class);
+        assertThat(profileRegistry.delete("unknown")).isFalse();
+    }
+
+    @Test
+    public void should_reject_profile_id_escaping_the_directory() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, directory);
+        //When && Then
+        assertThatThrownBy(() -> profileRegistry.put("../profile", filterOperations(), null))
+                .isInstanceOf(InvalidProfileException.class);
+    }
+
+    @Test
+    public void should_keep_previous_version_when_operations_do_not_compile() {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, null);
+        MappingProfile first = profileRegistry.put("adeunis-arf8230", filterOperations(), null);
+        //When && Then
+        assertThatThrownBy(() -> profileRegistry.put(
+                "adeunis-arf8230", Collections.singletonList(mock(UpOperation.class)), null))
+                .isInstanceOf(InvalidProfileException.class)
+                .hasCauseInstanceOf(UnsupportedOperationException.class);
+        assertThat(profileRegistry.get("adeunis-arf8230")).containsSame(first);
+    }
+
+    @Test
+    public void should_keep_profile_when_its_file_cannot_be_deleted() throws IOException {
+        // Given
+        ProfileRegistry profileRegistry = new ProfileRegistry(operationService, directory);
+        MappingProfile profile = profileRegistry.put("adeunis-arf8230", filterOperations(), null);
+        Files.delete(directory.resolve("adeunis-arf8230.json"));
+        Files.createDirectories(directory.resolve("adeunis-arf8230.json").resolve("locked"));
+        //When && Then
+        assertThatThrownBy(() -> profileRegistry.delete("adeunis-arf8230")).isInstanceOf(UncheckedIOException.class);
+        assertThat(profileRegistry.get("adeunis-arf8230")).containsSame(profile);
+    }
+}
@@ -0,0 +1,66 @@
+package com.actility.m2m.ontology.mapper.server.execution;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappingExecutorTest {
+
+    ThreadPoolExecutor workerExecutor;
+
+    @BeforeEach
+    public void setup() {
+        workerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        workerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void should_select_mode_from_payload_size_class() {
+        // Given
+        MappingExecutor mappingExecutor =
+                new MappingExecutor(workerExecutor, null, 1, ExecutionMode.EVENT_LOOP, ExecutionMode.VIRTUAL, 1024);
+        //When && Then
+        assertThat(mappingExecutor.modeFor(10)).isEqualTo(ExecutionMode.EVENT_LOOP);
+        assertThat(mappingExecutor.modeFor(1024)).isEqualTo(ExecutionMode.WORKER);
+    }
+
+    @Test
+    public void should_run_on_worker_and_record_queue_time() {
+        // Given
+        MappingExecutor mappingExecutor =
+                new MappingExecutor(workerExecutor, null, 1, ExecutionMode.WORKER, ExecutionMode.WORKER, 1024);
+        //When
+        String threadName = mappingExecutor.execute(10, () -> Thread.currentThread().getName()).blockingGet();
+        //Then
+        assertThat(threadName).isNotEqualTo(Thread.currentThread().getName());
+        assertThat(mappingExecutor.getQueueTimeCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_reject_when_worker_queue_is_full() throws InterruptedException {
+        // Given
+        MappingExecutor mappingExecutor =
+                new MappingExecutor(workerExecutor, null, 1, ExecutionMode.WORKER, ExecutionMode.WORKER, 1024);
+        CountDownLatch release = new CountDownLatch(1);
+        mappingExecutor.execute(10, () -> release.await(5, TimeUnit.SECONDS)).subscribe(result -> { }, error -> { });
+        mappingExecutor.execute(10, () -> true).subscribe(result -> { }, error -> { });
+        //When && Then
+        assertThatThrownBy(() -> mappingExecutor.execute(10, () -> true).blockingGet())
+                .isInstanceOf(MappingRejectedException.class);
+        assertThat(mappingExecutor.getRejectedCount()).isEqualTo(1);
+        release.countDown();
+    }
+}
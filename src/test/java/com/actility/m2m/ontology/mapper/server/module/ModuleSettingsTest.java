@@ -0,0 +1,67 @@
+package com.actility.m2m.ontology.mapper.server.module;
+
+import com.actility.m2m.ontology.mapper.profile.ExecutionMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ModuleSettingsTest {
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_KEY);
+    }
+
+    @Test
+    public void should_read_settings_or_default() {
+        //When && Then
+        assertThat(ModuleSettings.positiveInt("mapping.worker.threads", null, 4)).isEqualTo(4);
+        assertThat(ModuleSettings.positiveInt("mapping.worker.threads", " 8 ", 4)).isEqualTo(8);
+        assertThat(ModuleSettings.mode("mapping.smallPayload.mode", null, ExecutionMode.EVENT_LOOP))
+                .isEqualTo(ExecutionMode.EVENT_LOOP);
+        assertThat(ModuleSettings.mode("mapping.smallPayload.mode", "worker", ExecutionMode.EVENT_LOOP))
+                .isEqualTo(ExecutionMode.WORKER);
+    }
+
+    @Test
+    public void should_read_the_key_as_a_system_property() {
+        //Given
+        System.setProperty(MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_KEY, "64");
+
+        //When
+        int limit = ModuleSettings.positiveIntSetting(
+                MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_KEY, MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_ENV, 10);
+
+        //Then
+        assertThat(limit).isEqualTo(64);
+    }
+
+    @Test
+    public void should_default_a_blank_setting() {
+        //Given
+        System.setProperty(MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_KEY, " ");
+
+        //When
+        int limit = ModuleSettings.positiveIntSetting(
+                MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_KEY, MappingExecutorModule.VIRTUAL_MAX_IN_FLIGHT_ENV, 10);
+
+        //Then
+        assertThat(limit).isEqualTo(10);
+    }
+
+    @Test
+    public void should_name_the_invalid_setting() {
+        //When && Then
+        assertThatThrownBy(() -> ModuleSettings.positiveInt("mapping.queue.capacity", "many", 1024))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("mapping.queue.capacity must be a positive integer but is 'many'");
+        assertThatThrownBy(() -> ModuleSettings.positiveInt("mapping.queue.capacity", "0", 1024))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("mapping.queue.capacity must be a positive integer but is '0'");
+        assertThatThrownBy(() -> ModuleSettings.mode("mapping.largePayload.mode", "threads", ExecutionMode.WORKER))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("mapping.largePayload.mode must be one of [EVENT_LOOP, WORKER, VIRTUAL] but is 'threads'");
+    }
+}